@@ -0,0 +1,118 @@
+package jetpac.app;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.util.HashMap;
+
+import prof.jogos2D.image.*;
+
+/**
+ * Guarda as imagens já lidas durante a leitura de um nível. Cada ficheiro de
+ * imagem, com a mesma configuração de animação, só é descodificado uma vez; os
+ * elementos que o usam recebem cópias (clone) do componente original, que
+ * partilham as mesmas imagens. Assim, um nível com muitas plataformas ou
+ * tesouros iguais não cria uma imagem por elemento. As imagens que não estão
+ * no nível são pedidas à cache partilhada, que as guarda entre níveis.
+ */
+class AtlasNivel {
+
+	// os componentes originais, indexados pelo ficheiro e configuração
+	private HashMap<String, ComponenteVisual> originais = new HashMap<>();
+
+	// a cache de onde vêm as imagens
+	private CacheSprites cache;
+
+	/**
+	 * cria o atlas de um nível, usando a cache partilhada do jogo
+	 */
+	public AtlasNivel() {
+		this(CacheSprites.getGlobal());
+	}
+
+	/**
+	 * cria o atlas de um nível, usando a cache indicada
+	 * 
+	 * @param cache a cache de onde vêm as imagens
+	 */
+	public AtlasNivel(CacheSprites cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * retorna uma imagem simples, sem animação
+	 * 
+	 * @param file o ficheiro com a imagem
+	 * @param p    a posição da imagem
+	 * @return a imagem na posição indicada
+	 * @throws IOException se houver erros na leitura do ficheiro
+	 */
+	public ComponenteVisual simples(String file, Point p) throws IOException {
+		String chave = file + "|s";
+		ComponenteVisual orig = originais.get(chave);
+		if (orig == null) {
+			orig = cache.simples(file);
+			originais.put(chave, orig);
+		}
+		return copia(orig, p);
+	}
+
+	/**
+	 * retorna uma imagem animada
+	 * 
+	 * @param file    o ficheiro com as frames
+	 * @param nFrames número de frames da animação
+	 * @param delay   tempo entre frames
+	 * @param p       a posição da imagem
+	 * @return a imagem na posição indicada
+	 * @throws IOException se houver erros na leitura do ficheiro
+	 */
+	public ComponenteVisual animado(String file, int nFrames, int delay, Point p) throws IOException {
+		String chave = file + "|a|" + nFrames + "|" + delay;
+		ComponenteVisual orig = originais.get(chave);
+		if (orig == null) {
+			orig = cache.animado(file, nFrames, delay);
+			originais.put(chave, orig);
+		}
+		return copia(orig, p);
+	}
+
+	/**
+	 * retorna uma imagem com várias animações
+	 * 
+	 * @param file    o ficheiro com as animações
+	 * @param nAnims  número de animações
+	 * @param nFrames número de frames de cada animação
+	 * @param delay   tempo entre frames
+	 * @param p       a posição da imagem
+	 * @return a imagem na posição indicada
+	 * @throws IOException se houver erros na leitura do ficheiro
+	 */
+	public ComponenteMultiAnimado multiAnimado(String file, int nAnims, int nFrames, int delay, Point p)
+			throws IOException {
+		String chave = file + "|m|" + nAnims + "|" + nFrames + "|" + delay;
+		ComponenteVisual orig = originais.get(chave);
+		if (orig == null) {
+			orig = cache.multiAnimado(file, nAnims, nFrames, delay);
+			originais.put(chave, orig);
+		}
+		return (ComponenteMultiAnimado) copia(orig, p);
+	}
+
+	/**
+	 * número de imagens diferentes lidas
+	 * 
+	 * @return número de imagens diferentes lidas
+	 */
+	public int tamanho() {
+		return originais.size();
+	}
+
+	/**
+	 * cria uma cópia do original na posição indicada
+	 */
+	private static ComponenteVisual copia(ComponenteVisual orig, Point p) {
+		ComponenteVisual c = orig.clone();
+		c.setPosicao(new Point(p));
+		return c;
+	}
+}
@@ -0,0 +1,226 @@
+package jetpac.app;
+
+import java.awt.Point;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import prof.jogos2D.image.*;
+
+/**
+ * Cache de imagens partilhada por todos os níveis do jogo. As imagens são
+ * identificadas pelo conteúdo do ficheiro (um hash SHA-256) e pela
+ * configuração de animação, por isso dois ficheiros iguais com nomes
+ * diferentes só são descodificados uma vez. A cache tem um limite de memória
+ * e, quando o ultrapassa, retira as imagens usadas há mais tempo.
+ * <p>
+ * A cache guarda os componentes originais; quem os usa deve trabalhar com
+ * cópias (clone), que partilham as imagens descodificadas.
+ */
+final class CacheSprites {
+
+	// limite por omissão: 64 MB de imagens descodificadas
+	private static final long LIMITE_OMISSAO = 64L * 1024 * 1024;
+
+	// número máximo de hashes de ficheiros memorizados
+	private static final int MAX_HASHES = 256;
+
+	// a cache usada pelo jogo
+	private static final CacheSprites global = new CacheSprites(LIMITE_OMISSAO);
+
+	/** uma imagem na cache e a memória estimada que ocupa */
+	private static class Entrada {
+		final ComponenteVisual original;
+		final long bytes;
+
+		Entrada(ComponenteVisual original, long bytes) {
+			this.original = original;
+			this.bytes = bytes;
+		}
+	}
+
+	// imagens por hash do conteúdo + configuração, por ordem de utilização
+	private LinkedHashMap<String, Entrada> imagens = new LinkedHashMap<>(64, 0.75f, true);
+
+	// hash já calculado de cada ficheiro (caminho, tamanho e data), para não
+	// voltar a ler ficheiros que não mudaram; esquece os usados há mais tempo
+	private LinkedHashMap<String, String> hashes = new LinkedHashMap<>(64, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> velha) {
+			return size() > MAX_HASHES;
+		}
+	};
+
+	private final long limite; // memória máxima, em bytes
+	private long ocupado; // memória estimada em uso, em bytes
+
+	// estatísticas
+	private int acertos, falhas, retiradas;
+
+	/**
+	 * Cria uma cache com o limite de memória indicado
+	 * 
+	 * @param limite memória máxima das imagens, em bytes
+	 */
+	CacheSprites(long limite) {
+		this.limite = limite;
+	}
+
+	/**
+	 * retorna a cache partilhada pelo jogo
+	 * 
+	 * @return a cache partilhada pelo jogo
+	 */
+	static CacheSprites getGlobal() {
+		return global;
+	}
+
+	/**
+	 * retorna o componente original de uma imagem simples
+	 * 
+	 * @param file o ficheiro com a imagem
+	 * @return o componente original, que não deve ser alterado
+	 * @throws IOException se houver erros na leitura do ficheiro
+	 */
+	public synchronized ComponenteVisual simples(String file) throws IOException {
+		String chave = hash(file) + "|s";
+		Entrada e = imagens.get(chave);
+		if (e == null) {
+			ComponenteVisual c = new ComponenteSimples(new Point(), file);
+			e = guardar(chave, c, 1);
+		} else
+			acertos++;
+		return e.original;
+	}
+
+	/**
+	 * retorna o componente original de uma imagem animada
+	 * 
+	 * @param file    o ficheiro com as frames
+	 * @param nFrames número de frames da animação
+	 * @param delay   tempo entre frames
+	 * @return o componente original, que não deve ser alterado
+	 * @throws IOException se houver erros na leitura do ficheiro
+	 */
+	public synchronized ComponenteVisual animado(String file, int nFrames, int delay) throws IOException {
+		String chave = hash(file) + "|a|" + nFrames + "|" + delay;
+		Entrada e = imagens.get(chave);
+		if (e == null) {
+			ComponenteVisual c = new ComponenteAnimado(new Point(), file, nFrames, delay);
+			e = guardar(chave, c, nFrames);
+		} else
+			acertos++;
+		return e.original;
+	}
+
+	/**
+	 * retorna o componente original de uma imagem com várias animações
+	 * 
+	 * @param file    o ficheiro com as animações
+	 * @param nAnims  número de animações
+	 * @param nFrames número de frames de cada animação
+	 * @param delay   tempo entre frames
+	 * @return o componente original, que não deve ser alterado
+	 * @throws IOException se houver erros na leitura do ficheiro
+	 */
+	public synchronized ComponenteMultiAnimado multiAnimado(String file, int nAnims, int nFrames, int delay)
+			throws IOException {
+		String chave = hash(file) + "|m|" + nAnims + "|" + nFrames + "|" + delay;
+		Entrada e = imagens.get(chave);
+		if (e == null) {
+			ComponenteVisual c = new ComponenteMultiAnimado(new Point(), file, nAnims, nFrames, delay);
+			e = guardar(chave, c, nAnims * nFrames);
+		} else
+			acertos++;
+		return (ComponenteMultiAnimado) e.original;
+	}
+
+	/**
+	 * guarda uma imagem acabada de descodificar e retira as imagens mais
+	 * antigas se o limite de memória foi ultrapassado
+	 */
+	private Entrada guardar(String chave, ComponenteVisual c, int nFrames) {
+		falhas++;
+		// cada frame tem o tamanho do componente, a 4 bytes por pixel
+		long bytes = 4L * Math.max(1, c.getComprimento()) * Math.max(1, c.getAltura()) * Math.max(1, nFrames);
+		Entrada e = new Entrada(c, bytes);
+		imagens.put(chave, e);
+		ocupado += bytes;
+
+		// retirar as menos usadas, mas nunca a que acabou de ser pedida
+		Iterator<Map.Entry<String, Entrada>> it = imagens.entrySet().iterator();
+		while (ocupado > limite && it.hasNext()) {
+			Map.Entry<String, Entrada> velha = it.next();
+			if (velha.getValue() == e)
+				break;
+			ocupado -= velha.getValue().bytes;
+			it.remove();
+			retiradas++;
+		}
+		return e;
+	}
+
+	/**
+	 * calcula o hash do conteúdo do ficheiro. O hash é memorizado enquanto o
+	 * ficheiro não mudar de tamanho nem de data. Os componentes só carregam
+	 * imagens a partir do caminho, por isso numa falha o ficheiro é lido aqui e
+	 * outra vez pelo componente.
+	 */
+	private String hash(String file) throws IOException {
+		File f = new File(file);
+		String id = f.getAbsolutePath() + "|" + f.length() + "|" + f.lastModified();
+		String h = hashes.get(id);
+		if (h == null) {
+			try {
+				MessageDigest md = MessageDigest.getInstance("SHA-256");
+				h = HexFormat.of().formatHex(md.digest(Files.readAllBytes(f.toPath())));
+			} catch (NoSuchAlgorithmException e) {
+				// todas as JVMs têm SHA-256, mas na falta usa-se o caminho
+				h = id;
+			}
+			hashes.put(id, h);
+		}
+		return h;
+	}
+
+	/**
+	 * retira todas as imagens da cache
+	 */
+	public synchronized void limpar() {
+		imagens.clear();
+		hashes.clear();
+		ocupado = 0;
+	}
+
+	/**
+	 * memória estimada ocupada pelas imagens, em bytes
+	 * 
+	 * @return memória estimada ocupada pelas imagens, em bytes
+	 */
+	public synchronized long getOcupado() {
+		return ocupado;
+	}
+
+	/**
+	 * número de imagens na cache
+	 * 
+	 * @return número de imagens na cache
+	 */
+	public synchronized int tamanho() {
+		return imagens.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CacheSprites[imagens=" + imagens.size() + ", ocupado=" + ocupado / 1024 + "KB, acertos=" + acertos
+				+ ", falhas=" + falhas + ", retiradas=" + retiradas + "]";
+	}
+}
@@ -0,0 +1,70 @@
+package jetpac.app;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Junta os ficheiros de texto dos níveis num só pacote binário, que o jogo
+ * usa em vez dos ficheiros de texto se existir e for mais recente que eles.
+ * <p>
+ * Uso: CompiladorNiveis [diretorioNiveis] [pacote]. Por omissão lê
+ * data/levels/level1.txt, level2.txt, ... até faltar um, e escreve
+ * data/levels/niveis.pack.
+ */
+public class CompiladorNiveis {
+
+	/**
+	 * compila os níveis de um diretório num pacote
+	 * 
+	 * @param dirNiveis o diretório com os ficheiros levelN.txt
+	 * @param pacote    o ficheiro do pacote a criar
+	 * @return número de níveis compilados
+	 * @throws IOException se houver erros na escrita do pacote
+	 */
+	public static int compilar(String dirNiveis, String pacote) throws IOException {
+		ArrayList<byte[]> seccoes = new ArrayList<>();
+		// só se guarda a descrição, as imagens não são precisas
+		WorldReader wr = new WorldReader(null);
+		for (int nivel = 1; new File(dirNiveis, "level" + nivel + ".txt").exists(); nivel++) {
+			EscritorNivel escritor = new EscritorNivel();
+			wr.lerNivel(new File(dirNiveis, "level" + nivel + ".txt").getPath(), escritor);
+			seccoes.add(escritor.getBytes());
+		}
+
+		int niveis[] = new int[seccoes.size()];
+		for (int i = 0; i < niveis.length; i++)
+			niveis[i] = i + 1;
+		PacoteNiveis.escrever(pacote, niveis, seccoes.toArray(new byte[0][]));
+		return niveis.length;
+	}
+
+	/**
+	 * indica se um pacote tem de ser compilado outra vez, porque não existe ou
+	 * algum dos ficheiros de texto dos níveis foi alterado depois dele
+	 * 
+	 * @param dirNiveis o diretório com os ficheiros levelN.txt
+	 * @param pacote    o ficheiro do pacote
+	 * @return true se o pacote não existe ou é mais antigo que algum nível
+	 */
+	public static boolean desatualizado(String dirNiveis, String pacote) {
+		File p = new File(pacote);
+		if (!p.exists())
+			return true;
+		long data = p.lastModified();
+		for (int nivel = 1;; nivel++) {
+			File f = new File(dirNiveis, "level" + nivel + ".txt");
+			if (!f.exists())
+				return false;
+			if (f.lastModified() > data)
+				return true;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		String dirNiveis = args.length > 0 ? args[0] : "data/levels/";
+		String pacote = args.length > 1 ? args[1] : "data/levels/niveis.pack";
+		int n = compilar(dirNiveis, pacote);
+		System.out.printf("%d níveis compilados para %s (%d bytes)%n", n, pacote, new File(pacote).length());
+	}
+}
@@ -0,0 +1,159 @@
+package jetpac.app;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.IOException;
+
+import jetpac.astro.Astronauta;
+import jetpac.astro.Plataforma;
+import jetpac.astro.Spaceship;
+import jetpac.drag.SpaceshipPart;
+import jetpac.enemy.AnimacaoInimigo;
+import jetpac.generator.EnemyGenerator;
+import jetpac.generator.FuelGenerator;
+import jetpac.generator.TreasureGenerator;
+import jetpac.generator.TreasureInfo;
+import jetpac.mundo.Mundo;
+import prof.jogos2D.image.*;
+
+/**
+ * Constrói um mundo a partir da descrição de um nível
+ */
+class ConstrutorMundo implements ConstrutorNivel {
+
+	// o diretório onde estão os ficheiros com as imagens
+	private String artDir;
+
+	// o mundo a ser criado
+	private Mundo world;
+
+	// imagens já lidas neste nível, para não descodificar o mesmo ficheiro
+	// várias vezes
+	private AtlasNivel atlas = new AtlasNivel();
+
+	// informação dos tesouros que está a ser lida
+	private TreasureInfo[] tInfo;
+	private int nTesourosLidos;
+
+	/**
+	 * Cria o construtor de um mundo, com uma semente aleatória
+	 * 
+	 * @param artDir o diretório onde estão as imagens
+	 */
+	public ConstrutorMundo(String artDir) {
+		this.artDir = artDir;
+		// cria um mundo novo, vazio
+		world = new Mundo();
+	}
+
+	/**
+	 * Cria o construtor de um mundo
+	 * 
+	 * @param artDir  o diretório onde estão as imagens
+	 * @param semente semente dos números aleatórios do mundo
+	 */
+	public ConstrutorMundo(String artDir, long semente) {
+		this.artDir = artDir;
+		// cria um mundo novo, vazio
+		world = new Mundo(semente);
+	}
+
+	/**
+	 * retorna o mundo construído
+	 * 
+	 * @return o mundo construído
+	 */
+	public Mundo getMundo() {
+		return world;
+	}
+
+	/**
+	 * cria a imagem indicada
+	 * 
+	 * @param file    o ficheiro da imagem
+	 * @param nFrames número de frames, 0 se não for animada
+	 * @param delay   tempo entre frames
+	 * @param p       a posição da imagem
+	 * @return a imagem pedida
+	 * @throws IOException se algo ocorrer na leitura do ficheiro
+	 */
+	private ComponenteVisual lerImagem(String file, int nFrames, int delay, Point p) throws IOException {
+		String imgFile = artDir + file;
+		if (nFrames == 0)
+			return atlas.simples(imgFile, p);
+		else
+			return atlas.animado(imgFile, nFrames, delay, p);
+	}
+
+	@Override
+	public void mundo(int comp, int alt, String img, int nFrames, int delay) throws IOException {
+		world.setDimensions(comp, alt);
+		world.setBackground(lerImagem(img, nFrames, delay, new Point()));
+	}
+
+	@Override
+	public void nave(int nPartes, int x, int y, String img, int nFrames, int delay) throws IOException {
+		ComponenteVisual cv = lerImagem(img, nFrames, delay, new Point(x, y));
+		world.addSpaceship(new Spaceship(nPartes, cv));
+	}
+
+	@Override
+	public void parteNave(int num, int x, int y, String img, int nFrames, int delay) throws IOException {
+		ComponenteVisual cv = lerImagem(img, nFrames, delay, new Point(x, y));
+		world.addSpaceshipPart(new SpaceshipPart(num, new Point(x, y), cv));
+	}
+
+	@Override
+	public void astronauta(int x, int y, String img, int dy) throws IOException {
+		ComponenteMultiAnimado cv = atlas.multiAnimado(artDir + img, Astronauta.NUM_ANIMS, Astronauta.NUM_FRAMES,
+				Astronauta.DELAY, new Point(x, y));
+		world.setAstronauta(new Astronauta(cv, new Point(x, y), dy));
+	}
+
+	@Override
+	public void fuel(int nFuels, int minTime, int maxTime, String img, int nFrames, int delay) throws IOException {
+		ComponenteVisual cv = lerImagem(img, nFrames, delay, new Point());
+		// criar o gerador de fuel e associá-lo ao mundo
+		world.setFuelGen(new FuelGenerator(nFuels, minTime, maxTime, cv, world));
+	}
+
+	@Override
+	public void plataforma(int x, int y, String img, int nFrames, int delay) throws IOException {
+		ComponenteVisual cv = lerImagem(img, nFrames, delay, new Point(x, y));
+		world.addPlatform(new Plataforma(cv));
+	}
+
+	@Override
+	public void inimigos(int maxInimigos, int vel, int pontos, String tipo, String img, int nFrames, int delay)
+			throws IOException {
+		ComponenteMultiAnimado cv = atlas.multiAnimado(artDir + img, 3, nFrames, delay, new Point());
+		// criar o gerador de inimigos e associá-lo ao mundo
+		world.setEnemyGen(new EnemyGenerator(tipo, maxInimigos, vel, pontos, new AnimacaoInimigo(cv, nFrames, delay),
+				world));
+	}
+
+	@Override
+	public void tesouros(int nTesouros, int minTime, int maxTime) {
+		tInfo = new TreasureInfo[nTesouros];
+		nTesourosLidos = 0;
+		world.setTreasureGenerator(new TreasureGenerator(1, minTime, maxTime, tInfo, world));
+	}
+
+	@Override
+	public void tesouro(int prob, int duracao, int pontos, String img, int nFrames, int delay) throws IOException {
+		ComponenteVisual cv = lerImagem(img, nFrames, delay, new Point());
+		tInfo[nTesourosLidos++] = new TreasureInfo(prob, duracao, pontos, cv);
+	}
+
+	@Override
+	public void fim() {
+		// no fim adicionar sempre o teto
+		ComponenteVazio teto = new ComponenteVazio(new Rectangle(-10, -10, world.getWidth() + 20, 10));
+		world.addPlatform(new Plataforma(teto));
+
+		// o nível está completo, o mundo pode preparar as estruturas estáticas
+		world.nivelCarregado();
+		// as imagens já estão todas distribuídas
+		atlas = null;
+	}
+}
@@ -0,0 +1,134 @@
+package jetpac.app;
+
+import java.io.IOException;
+
+/**
+ * Recebe a descrição de um nível, elemento a elemento, à medida que é lida.
+ * Quem lê o nível (o ficheiro de texto ou o pacote binário) não sabe o que é
+ * feito com a informação: pode ser criado o mundo, ou o nível pode ser
+ * guardado noutro formato.
+ * <p>
+ * As imagens são indicadas pelo ficheiro, relativo ao diretório das imagens,
+ * pelo número de frames (0 se não for animada) e pelo tempo entre frames.
+ */
+public interface ConstrutorNivel {
+
+	/**
+	 * configuração do mundo
+	 * 
+	 * @param comp    comprimento do mundo
+	 * @param alt     altura do mundo
+	 * @param img     ficheiro da imagem de fundo
+	 * @param nFrames número de frames da imagem de fundo
+	 * @param delay   tempo entre frames da imagem de fundo
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void mundo(int comp, int alt, String img, int nFrames, int delay) throws IOException;
+
+	/**
+	 * a nave, que é também a sua primeira parte
+	 * 
+	 * @param nPartes número de partes da nave
+	 * @param x       coordenada x da nave
+	 * @param y       coordenada y da nave
+	 * @param img     ficheiro da imagem da nave
+	 * @param nFrames número de frames da imagem
+	 * @param delay   tempo entre frames
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void nave(int nPartes, int x, int y, String img, int nFrames, int delay) throws IOException;
+
+	/**
+	 * uma das partes da nave que é preciso ir buscar
+	 * 
+	 * @param num     o número da parte (começa em 1)
+	 * @param x       coordenada x da parte
+	 * @param y       coordenada y da parte
+	 * @param img     ficheiro da imagem da parte
+	 * @param nFrames número de frames da imagem
+	 * @param delay   tempo entre frames
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void parteNave(int num, int x, int y, String img, int nFrames, int delay) throws IOException;
+
+	/**
+	 * o astronauta
+	 * 
+	 * @param x   coordenada x inicial
+	 * @param y   coordenada y inicial
+	 * @param img ficheiro com as animações do astronauta
+	 * @param dy  velocidade vertical
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void astronauta(int x, int y, String img, int dy) throws IOException;
+
+	/**
+	 * o gerador de fuel
+	 * 
+	 * @param nFuels  quantos fuels é preciso apanhar
+	 * @param minTime tempo mínimo entre fuels
+	 * @param maxTime tempo máximo entre fuels
+	 * @param img     ficheiro da imagem do fuel
+	 * @param nFrames número de frames da imagem
+	 * @param delay   tempo entre frames
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void fuel(int nFuels, int minTime, int maxTime, String img, int nFrames, int delay) throws IOException;
+
+	/**
+	 * uma plataforma
+	 * 
+	 * @param x       coordenada x da plataforma
+	 * @param y       coordenada y da plataforma
+	 * @param img     ficheiro da imagem da plataforma
+	 * @param nFrames número de frames da imagem
+	 * @param delay   tempo entre frames
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void plataforma(int x, int y, String img, int nFrames, int delay) throws IOException;
+
+	/**
+	 * o gerador de inimigos
+	 * 
+	 * @param maxInimigos número máximo de inimigos ao mesmo tempo
+	 * @param vel         velocidade dos inimigos
+	 * @param pontos      pontos por cada inimigo abatido
+	 * @param tipo        tipo de inimigo
+	 * @param img         ficheiro com as animações dos inimigos
+	 * @param nFrames     número de frames de cada animação
+	 * @param delay       tempo entre frames
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void inimigos(int maxInimigos, int vel, int pontos, String tipo, String img, int nFrames, int delay)
+			throws IOException;
+
+	/**
+	 * o gerador de tesouros. Seguem-se nTesouros chamadas a tesouro
+	 * 
+	 * @param nTesouros número de tipos de tesouro
+	 * @param minTime   tempo mínimo entre tesouros
+	 * @param maxTime   tempo máximo entre tesouros
+	 * @throws IOException se houver erros ao guardar a informação
+	 */
+	public void tesouros(int nTesouros, int minTime, int maxTime) throws IOException;
+
+	/**
+	 * um tipo de tesouro
+	 * 
+	 * @param prob    probabilidade de aparecer
+	 * @param duracao quanto tempo fica no mundo
+	 * @param pontos  pontos que vale
+	 * @param img     ficheiro da imagem do tesouro
+	 * @param nFrames número de frames da imagem
+	 * @param delay   tempo entre frames
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public void tesouro(int prob, int duracao, int pontos, String img, int nFrames, int delay) throws IOException;
+
+	/**
+	 * indica que o nível foi todo lido
+	 * 
+	 * @throws IOException se houver erros ao guardar a informação
+	 */
+	public void fim() throws IOException;
+}
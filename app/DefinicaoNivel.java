@@ -0,0 +1,100 @@
+package jetpac.app;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+import jetpac.mundo.Mundo;
+
+/**
+ * A definição de um nível, já lida e guardada no formato binário dos pacotes
+ * de níveis. A definição é imutável e pode ser partilhada por várias threads:
+ * cada mundo criado a partir dela é independente dos outros, por isso o mesmo
+ * nível só precisa de ser lido uma vez para se criarem muitos mundos.
+ */
+public final class DefinicaoNivel {
+
+	private final int nivel; // o número do nível
+	private final byte bytes[]; // a secção do nível no formato do pacote
+
+	private DefinicaoNivel(int nivel, byte bytes[]) {
+		this.nivel = nivel;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Lê a definição de um ficheiro de texto de nível
+	 * 
+	 * @param nivel o número do nível
+	 * @param file  o ficheiro com o nível
+	 * @return a definição do nível
+	 * @throws IOException se houver erros na leitura
+	 */
+	public static DefinicaoNivel deFicheiro(int nivel, String file) throws IOException {
+		EscritorNivel escritor = new EscritorNivel();
+		try (Reader in = new FileReader(file)) {
+			new WorldReader(null).lerNivel(in, escritor);
+		} catch (IOException e) {
+			throw new IOException(file + ": " + e.getMessage(), e);
+		}
+		return new DefinicaoNivel(nivel, escritor.getBytes());
+	}
+
+	/**
+	 * Lê a definição de um nível de um pacote de níveis
+	 * 
+	 * @param pacote o pacote com os níveis
+	 * @param nivel  o nível a ler
+	 * @return a definição do nível
+	 */
+	public static DefinicaoNivel dePacote(PacoteNiveis pacote, int nivel) {
+		ByteBuffer seccao = pacote.getSeccao(nivel);
+		byte bytes[] = new byte[seccao.remaining()];
+		seccao.get(bytes);
+		return new DefinicaoNivel(nivel, bytes);
+	}
+
+	/**
+	 * Cria uma definição a partir de bytes no formato dos pacotes de níveis
+	 * 
+	 * @param nivel o número do nível
+	 * @param bytes a secção do nível, que é copiada
+	 * @return a definição do nível
+	 */
+	public static DefinicaoNivel deBytes(int nivel, byte bytes[]) {
+		return new DefinicaoNivel(nivel, bytes.clone());
+	}
+
+	/**
+	 * Cria um mundo novo a partir desta definição
+	 * 
+	 * @param artDir  o diretório onde estão as imagens
+	 * @param semente semente dos números aleatórios do mundo
+	 * @return o mundo criado
+	 * @throws IOException se houver erros na leitura das imagens
+	 */
+	public Mundo criarMundo(String artDir, long semente) throws IOException {
+		ConstrutorMundo cm = new ConstrutorMundo(artDir, semente);
+		PacoteNiveis.lerSeccao(ByteBuffer.wrap(bytes).asReadOnlyBuffer(), cm);
+		return cm.getMundo();
+	}
+
+	/**
+	 * retorna o número do nível
+	 * 
+	 * @return o número do nível
+	 */
+	public int getNivel() {
+		return nivel;
+	}
+
+	/**
+	 * retorna uma cópia da definição no formato dos pacotes de níveis
+	 * 
+	 * @return uma cópia da definição
+	 */
+	public byte[] getBytes() {
+		return bytes.clone();
+	}
+}
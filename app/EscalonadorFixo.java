@@ -0,0 +1,78 @@
+package jetpac.app;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Escalonador de ciclos com passo fixo. Em vez de ficar a rodar até chegar a
+ * altura do próximo ciclo, adormece a thread até lá. Se a thread se atrasar
+ * (por exemplo por uma pausa do GC) indica quantos ciclos é preciso fazer para
+ * recuperar, mas nunca mais do que um máximo, para o jogo não "disparar"
+ * depois de uma paragem longa.
+ */
+public class EscalonadorFixo {
+
+	private final long intervaloNanos; // duração de cada ciclo
+	private final int maxCiclosRecuperacao; // máximo de ciclos a fazer de uma vez
+	private long proximoCiclo; // instante (em nanos) do próximo ciclo
+
+	/**
+	 * Cria o escalonador
+	 * 
+	 * @param intervaloMilis       duração de cada ciclo em milisegundos
+	 * @param maxCiclosRecuperacao número máximo de ciclos a fazer de seguida
+	 *                             para recuperar de um atraso
+	 */
+	public EscalonadorFixo(long intervaloMilis, int maxCiclosRecuperacao) {
+		this.intervaloNanos = TimeUnit.MILLISECONDS.toNanos(intervaloMilis);
+		this.maxCiclosRecuperacao = Math.max(1, maxCiclosRecuperacao);
+	}
+
+	/**
+	 * começa a contagem. O primeiro ciclo é feito de imediato.
+	 */
+	public void iniciar() {
+		proximoCiclo = System.nanoTime();
+	}
+
+	/**
+	 * Espera pela altura do próximo ciclo, sem ocupar o processador.
+	 * 
+	 * @return quantos ciclos devem ser feitos agora (pelo menos 1)
+	 */
+	public int esperar() {
+		long agora = System.nanoTime();
+		while (agora < proximoCiclo) {
+			LockSupport.parkNanos(proximoCiclo - agora);
+			agora = System.nanoTime();
+		}
+
+		// ver quantos ciclos estão em atraso
+		long emAtraso = (agora - proximoCiclo) / intervaloNanos + 1;
+		if (emAtraso > maxCiclosRecuperacao) {
+			// atraso demasiado grande, esquece o excesso e recomeça a partir de agora
+			proximoCiclo = agora + intervaloNanos;
+			return maxCiclosRecuperacao;
+		}
+		proximoCiclo += emAtraso * intervaloNanos;
+		return (int) emAtraso;
+	}
+
+	/**
+	 * retorna o número de ciclos por segundo configurado
+	 * 
+	 * @return o número de ciclos por segundo
+	 */
+	public double getCiclosPorSegundo() {
+		return TimeUnit.SECONDS.toNanos(1) / (double) intervaloNanos;
+	}
+
+	/**
+	 * retorna a duração de cada ciclo em milisegundos
+	 * 
+	 * @return a duração de cada ciclo
+	 */
+	public long getIntervaloMilis() {
+		return TimeUnit.NANOSECONDS.toMillis(intervaloNanos);
+	}
+}
@@ -0,0 +1,131 @@
+package jetpac.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Guarda a descrição de um nível no formato binário dos pacotes de níveis.
+ * Cada elemento é um registo com uma etiqueta (ver PacoteNiveis) seguida dos
+ * seus campos; os textos são guardados com o comprimento à frente.
+ */
+public class EscritorNivel implements ConstrutorNivel {
+
+	private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private DataOutputStream out = new DataOutputStream(bytes);
+
+	/**
+	 * retorna o nível em formato binário. Só deve ser chamado depois de o nível
+	 * ter sido todo lido.
+	 * 
+	 * @return o nível em formato binário
+	 */
+	public byte[] getBytes() {
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public void mundo(int comp, int alt, String img, int nFrames, int delay) throws IOException {
+		out.writeByte(PacoteNiveis.MUNDO);
+		out.writeInt(comp);
+		out.writeInt(alt);
+		imagem(img, nFrames, delay);
+	}
+
+	@Override
+	public void nave(int nPartes, int x, int y, String img, int nFrames, int delay) throws IOException {
+		out.writeByte(PacoteNiveis.NAVE);
+		out.writeInt(nPartes);
+		out.writeInt(x);
+		out.writeInt(y);
+		imagem(img, nFrames, delay);
+	}
+
+	@Override
+	public void parteNave(int num, int x, int y, String img, int nFrames, int delay) throws IOException {
+		out.writeByte(PacoteNiveis.PARTE);
+		out.writeInt(num);
+		out.writeInt(x);
+		out.writeInt(y);
+		imagem(img, nFrames, delay);
+	}
+
+	@Override
+	public void astronauta(int x, int y, String img, int dy) throws IOException {
+		out.writeByte(PacoteNiveis.ASTRONAUTA);
+		out.writeInt(x);
+		out.writeInt(y);
+		texto(img);
+		out.writeInt(dy);
+	}
+
+	@Override
+	public void fuel(int nFuels, int minTime, int maxTime, String img, int nFrames, int delay) throws IOException {
+		out.writeByte(PacoteNiveis.FUEL);
+		out.writeInt(nFuels);
+		out.writeInt(minTime);
+		out.writeInt(maxTime);
+		imagem(img, nFrames, delay);
+	}
+
+	@Override
+	public void plataforma(int x, int y, String img, int nFrames, int delay) throws IOException {
+		out.writeByte(PacoteNiveis.PLATAFORMA);
+		out.writeInt(x);
+		out.writeInt(y);
+		imagem(img, nFrames, delay);
+	}
+
+	@Override
+	public void inimigos(int maxInimigos, int vel, int pontos, String tipo, String img, int nFrames, int delay)
+			throws IOException {
+		out.writeByte(PacoteNiveis.INIMIGOS);
+		out.writeInt(maxInimigos);
+		out.writeInt(vel);
+		out.writeInt(pontos);
+		texto(tipo);
+		imagem(img, nFrames, delay);
+	}
+
+	@Override
+	public void tesouros(int nTesouros, int minTime, int maxTime) throws IOException {
+		out.writeByte(PacoteNiveis.TESOUROS);
+		out.writeInt(nTesouros);
+		out.writeInt(minTime);
+		out.writeInt(maxTime);
+	}
+
+	@Override
+	public void tesouro(int prob, int duracao, int pontos, String img, int nFrames, int delay) throws IOException {
+		out.writeByte(PacoteNiveis.TESOURO);
+		out.writeInt(prob);
+		out.writeInt(duracao);
+		out.writeInt(pontos);
+		imagem(img, nFrames, delay);
+	}
+
+	@Override
+	public void fim() throws IOException {
+		out.writeByte(PacoteNiveis.FIM);
+		out.flush();
+	}
+
+	/**
+	 * escreve a referência a uma imagem
+	 */
+	private void imagem(String img, int nFrames, int delay) throws IOException {
+		texto(img);
+		out.writeInt(nFrames);
+		out.writeInt(delay);
+	}
+
+	/**
+	 * escreve um texto em UTF-8, precedido do número de bytes
+	 */
+	private void texto(String s) throws IOException {
+		byte b[] = s.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(b.length);
+		out.write(b);
+	}
+}
@@ -0,0 +1,198 @@
+package jetpac.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import jetpac.mundo.Mundo;
+
+/**
+ * Um jogo guardado a meio de um nível. Guarda a definição do nível, no formato
+ * dos pacotes de níveis, e o estado do mundo (ver Mundo.guardarEstado), por
+ * isso o jogo é reposto sem voltar a ler o ficheiro de texto do nível.
+ * Formato do ficheiro:
+ * 
+ * <pre>
+ * int    MAGIA ("JSAV")
+ * byte   VERSAO
+ * int    nível
+ * long   semente do mundo
+ * int    tamanho da definição do nível, seguido da definição
+ * int    tamanho do estado do mundo, seguido do estado
+ * </pre>
+ */
+public final class EstadoGuardado {
+
+	static final int MAGIA = 0x4A534156;
+	// muda sempre que muda o formato do estado de algum elemento do mundo
+	// 2: lasers guardados pelo anel Lasers
+	// 3: inimigos guardam a animação e a frame em que estão
+	// 4: astronauta guarda os ciclos passados desde que morreu
+	static final byte VERSAO = 4;
+
+	private final DefinicaoNivel definicao; // o nível que estava a ser jogado
+	private final long semente; // a semente do mundo
+	private final byte estado[]; // o estado do mundo
+
+	private EstadoGuardado(DefinicaoNivel definicao, long semente, byte estado[]) {
+		this.definicao = definicao;
+		this.semente = semente;
+		this.estado = estado;
+	}
+
+	/**
+	 * Guarda o estado atual de um mundo. Como o mundo não é sincronizado, deve
+	 * ser chamado pela mesma thread que faz o update.
+	 * 
+	 * @param definicao a definição do nível de onde o mundo foi criado
+	 * @param mundo     o mundo a guardar
+	 * @return o estado guardado
+	 * @throws IOException se o estado for maior que o tamanho máximo do estado
+	 *                     do mundo
+	 */
+	public static EstadoGuardado capturar(DefinicaoNivel definicao, Mundo mundo) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(mundo.getTamanhoMaximoEstado());
+		try {
+			mundo.guardarEstado(b);
+		} catch (BufferOverflowException e) {
+			throw new IOException("o estado do mundo tem mais de " + b.capacity() + " bytes", e);
+		}
+		byte estado[] = new byte[b.position()];
+		b.flip();
+		b.get(estado);
+		return new EstadoGuardado(definicao, mundo.getSemente(), estado);
+	}
+
+	/**
+	 * Cria o estado a partir dos bytes de um ficheiro de estado
+	 * 
+	 * @param bytes o conteúdo do ficheiro
+	 * @return o estado guardado
+	 * @throws IOException se os bytes não forem um estado válido
+	 */
+	public static EstadoGuardado deBytes(byte bytes[]) throws IOException {
+		ByteBuffer b = ByteBuffer.wrap(bytes);
+		if (b.remaining() < 21 || b.getInt() != MAGIA)
+			throw new IOException("não é um jogo guardado");
+		byte versao = b.get();
+		if (versao != VERSAO)
+			throw new IOException("versão " + versao + " do jogo guardado não suportada");
+		int nivel = b.getInt();
+		long semente = b.getLong();
+		try {
+			byte def[] = new byte[lerTamanho(b)];
+			b.get(def);
+			byte estado[] = new byte[lerTamanho(b)];
+			b.get(estado);
+			return new EstadoGuardado(DefinicaoNivel.deBytes(nivel, def), semente, estado);
+		} catch (RuntimeException e) {
+			throw new IOException("jogo guardado incompleto", e);
+		}
+	}
+
+	/**
+	 * lê o tamanho de uma secção, que tem de caber no que falta ler, para um
+	 * tamanho errado não fazer reservar um array enorme
+	 */
+	private static int lerTamanho(ByteBuffer b) throws IOException {
+		int n = b.getInt();
+		if (n < 0 || n > b.remaining())
+			throw new IOException("jogo guardado com uma secção de " + n + " bytes, só há " + b.remaining());
+		return n;
+	}
+
+	/**
+	 * lê um estado de um ficheiro
+	 * 
+	 * @param file o ficheiro com o estado
+	 * @return o estado guardado
+	 * @throws IOException se houver erros na leitura ou o estado não for válido
+	 */
+	public static EstadoGuardado ler(String file) throws IOException {
+		return deBytes(Files.readAllBytes(Path.of(file)));
+	}
+
+	/**
+	 * retorna o conteúdo do ficheiro de estado
+	 * 
+	 * @return o conteúdo do ficheiro de estado
+	 */
+	public byte[] getBytes() {
+		byte def[] = definicao.getBytes();
+		ByteBuffer b = ByteBuffer.allocate(25 + def.length + estado.length);
+		b.putInt(MAGIA);
+		b.put(VERSAO);
+		b.putInt(definicao.getNivel());
+		b.putLong(semente);
+		b.putInt(def.length);
+		b.put(def);
+		b.putInt(estado.length);
+		b.put(estado);
+		return b.array();
+	}
+
+	/**
+	 * Grava o estado num ficheiro, em segundo plano. O estado é escrito num
+	 * ficheiro temporário que depois substitui o ficheiro, por isso um
+	 * ficheiro de estado nunca fica a meio.
+	 * 
+	 * @param file     o ficheiro onde guardar
+	 * @param executor quem faz a escrita
+	 * @return a escrita, que termina com a exceção se houver erros
+	 */
+	public CompletableFuture<Void> guardar(String file, Executor executor) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				Path destino = Path.of(file);
+				Path temp = destino.resolveSibling(destino.getFileName() + ".tmp");
+				Files.write(temp, getBytes());
+				Files.move(temp, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Cria um mundo novo a partir da definição do nível e repõe nele o estado
+	 * guardado
+	 * 
+	 * @param artDir o diretório onde estão as imagens
+	 * @return o mundo, tal como estava quando foi guardado
+	 * @throws IOException se houver erros na leitura das imagens ou se a
+	 *                     definição ou o estado guardados não forem válidos
+	 */
+	public Mundo restaurar(String artDir) throws IOException {
+		try {
+			Mundo mundo = definicao.criarMundo(artDir, semente);
+			mundo.restaurarEstado(ByteBuffer.wrap(estado).asReadOnlyBuffer());
+			return mundo;
+		} catch (RuntimeException e) {
+			throw new IOException("jogo guardado inválido", e);
+		}
+	}
+
+	/**
+	 * retorna a definição do nível guardado
+	 * 
+	 * @return a definição do nível
+	 */
+	public DefinicaoNivel getDefinicao() {
+		return definicao;
+	}
+
+	/**
+	 * retorna o número do nível guardado
+	 * 
+	 * @return o número do nível
+	 */
+	public int getNivel() {
+		return definicao.getNivel();
+	}
+}
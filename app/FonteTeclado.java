@@ -0,0 +1,100 @@
+package jetpac.app;
+
+import java.awt.event.KeyEvent;
+
+import jetpac.astro.Astronauta;
+
+/**
+ * Fonte das teclas que controlam o astronauta. Pode ser o teclado real ou uma
+ * fonte simulada (por exemplo um guião), o que permite correr o jogo sem
+ * janela.
+ */
+public interface FonteTeclado {
+
+	/**
+	 * indica se a tecla está premida neste ciclo
+	 * 
+	 * @param tecla o código da tecla (KeyEvent.VK_*)
+	 * @return true se a tecla está premida
+	 */
+	public boolean estaPremida(int tecla);
+
+	/**
+	 * indica à fonte que começou um novo ciclo de jogo. Por omissão não faz
+	 * nada, mas as fontes simuladas usam-no para avançar.
+	 */
+	public default void proximoCiclo() {
+	}
+
+	/**
+	 * Aplica ao astronauta as teclas premidas neste ciclo
+	 * 
+	 * @param teclado a fonte das teclas
+	 * @param astro   o astronauta a controlar
+	 */
+	public static void aplicar(FonteTeclado teclado, Astronauta astro) {
+		teclado.proximoCiclo();
+
+		// subir?
+		astro.setRising(teclado.estaPremida(KeyEvent.VK_Q));
+		// disparar?
+		astro.setShooting(teclado.estaPremida(KeyEvent.VK_A));
+		// a andar? se sim para que lado?
+		if (teclado.estaPremida(KeyEvent.VK_N)) {
+			astro.setDirection(Astronauta.LEFT);
+			astro.setWalking(true);
+		} else if (teclado.estaPremida(KeyEvent.VK_M)) {
+			astro.setDirection(Astronauta.RIGHT);
+			astro.setWalking(true);
+		} else
+			astro.setWalking(false);
+
+		if (teclado.estaPremida(KeyEvent.VK_Z))
+			astro.drop();
+	}
+
+	/**
+	 * retorna o bit que representa uma das teclas do jogo numa máscara de
+	 * teclas: Q=1, A=2, N=4, M=8, Z=16. As teclas do jogo têm o código igual à
+	 * letra (KeyEvent.VK_Q == 'Q').
+	 * 
+	 * @param tecla o código da tecla
+	 * @return o bit da tecla, ou 0 se não for uma tecla do jogo
+	 */
+	public static int mascara(int tecla) {
+		switch (tecla) {
+			case KeyEvent.VK_Q:
+				return 1;
+			case KeyEvent.VK_A:
+				return 2;
+			case KeyEvent.VK_N:
+				return 4;
+			case KeyEvent.VK_M:
+				return 8;
+			case KeyEvent.VK_Z:
+				return 16;
+		}
+		return 0;
+	}
+
+	/**
+	 * retorna a máscara com as teclas do jogo premidas neste ciclo
+	 * 
+	 * @param teclado a fonte das teclas
+	 * @return a máscara das teclas premidas
+	 */
+	public static int lerMascara(FonteTeclado teclado) {
+		int m = 0;
+		if (teclado.estaPremida(KeyEvent.VK_Q))
+			m |= 1;
+		if (teclado.estaPremida(KeyEvent.VK_A))
+			m |= 2;
+		if (teclado.estaPremida(KeyEvent.VK_N))
+			m |= 4;
+		if (teclado.estaPremida(KeyEvent.VK_M))
+			m |= 8;
+		if (teclado.estaPremida(KeyEvent.VK_Z))
+			m |= 16;
+		return m;
+	}
+}
@@ -0,0 +1,161 @@
+package jetpac.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Grava as teclas usadas num nível para o poder repetir mais tarde (ver
+ * LeitorReplay). Fica entre a fonte real das teclas e o jogo: em cada ciclo lê
+ * as teclas da fonte, guarda-as e entrega-as ao jogo.
+ * <p>
+ * As teclas de cada ciclo formam uma máscara (ver FonteTeclado.mascara) e
+ * ciclos seguidos com a mesma máscara são guardados juntos, como a máscara
+ * seguida do número de ciclos. Formato do ficheiro:
+ * 
+ * <pre>
+ * int    MAGIA ("JRPL")
+ * byte   VERSAO
+ * int    nível
+ * long   semente do mundo
+ * byte   vidas no início do nível
+ * varint número de ciclos
+ * repetido: byte máscara, varint número de ciclos com essa máscara
+ * </pre>
+ * 
+ * Os varint usam 7 bits por byte, com o bit mais alto a indicar que há mais
+ * bytes.
+ */
+public class GravadorReplay implements FonteTeclado {
+
+	static final int MAGIA = 0x4A52504C;
+	// 2: a morte do astronauta passou a durar um número fixo de ciclos
+	static final byte VERSAO = 2;
+
+	private FonteTeclado origem; // de onde vêm as teclas
+	private int nivel; // o nível a ser jogado
+	private long semente; // a semente do mundo
+	private int vidas; // vidas no início do nível
+
+	private ByteArrayOutputStream sequencias = new ByteArrayOutputStream(1024);
+	private int mascaraAtual = -1; // as teclas do ciclo atual
+	private int repeticoes; // ciclos seguidos com a máscara atual
+	private long ciclos; // total de ciclos gravados
+
+	/**
+	 * Cria o gravador
+	 * 
+	 * @param origem  de onde vêm as teclas
+	 * @param nivel   o nível a ser jogado
+	 * @param semente a semente do mundo
+	 * @param vidas   vidas no início do nível
+	 */
+	public GravadorReplay(FonteTeclado origem, int nivel, long semente, int vidas) {
+		this.origem = origem;
+		this.nivel = nivel;
+		this.semente = semente;
+		this.vidas = vidas;
+	}
+
+	@Override
+	public void proximoCiclo() {
+		origem.proximoCiclo();
+		int m = FonteTeclado.lerMascara(origem);
+		if (m == mascaraAtual)
+			repeticoes++;
+		else {
+			fecharSequencia();
+			mascaraAtual = m;
+			repeticoes = 1;
+		}
+		ciclos++;
+	}
+
+	@Override
+	public boolean estaPremida(int tecla) {
+		// o jogo vê exatamente o que foi gravado
+		return mascaraAtual != -1 && (mascaraAtual & FonteTeclado.mascara(tecla)) != 0;
+	}
+
+	/**
+	 * guarda a sequência atual, se existir
+	 */
+	private void fecharSequencia() {
+		if (repeticoes == 0)
+			return;
+		sequencias.write(mascaraAtual);
+		escreverVarint(sequencias, repeticoes);
+		repeticoes = 0;
+	}
+
+	/**
+	 * retorna o número de ciclos gravados
+	 * 
+	 * @return o número de ciclos gravados
+	 */
+	public long getCiclos() {
+		return ciclos;
+	}
+
+	/**
+	 * retorna a gravação completa, até ao ciclo atual
+	 * 
+	 * @return a gravação no formato dos ficheiros de replay
+	 */
+	public byte[] getBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + sequencias.size());
+		try {
+			escrever(bytes);
+		} catch (IOException e) {
+			// um ByteArrayOutputStream não dá erros de escrita
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * guarda a gravação, até ao ciclo atual, num ficheiro
+	 * 
+	 * @param file o ficheiro onde guardar
+	 * @throws IOException se houver erros na escrita
+	 */
+	public void guardar(String file) throws IOException {
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(getBytes());
+		}
+	}
+
+	private void escrever(OutputStream o) throws IOException {
+		DataOutputStream out = new DataOutputStream(o);
+		out.writeInt(MAGIA);
+		out.writeByte(VERSAO);
+		out.writeInt(nivel);
+		out.writeLong(semente);
+		out.writeByte(vidas);
+		escreverVarint(out, ciclos);
+		sequencias.writeTo(out);
+		// a sequência atual ainda não está fechada
+		if (repeticoes > 0) {
+			out.write(mascaraAtual);
+			escreverVarint(out, repeticoes);
+		}
+		out.flush();
+	}
+
+	/**
+	 * escreve um inteiro não negativo usando 7 bits por byte
+	 */
+	static void escreverVarint(OutputStream out, long v) {
+		try {
+			while ((v & ~0x7FL) != 0) {
+				out.write((int) ((v & 0x7F) | 0x80));
+				v >>>= 7;
+			}
+			out.write((int) v);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
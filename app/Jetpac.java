@@ -1,15 +1,18 @@
 package jetpac.app;
 
 import java.awt.*;
-import java.awt.event.*;
-import java.awt.image.BufferedImage;
+import java.awt.event.KeyEvent;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
 
-import jetpac.astro.Astronauta;
 import jetpac.mundo.Mundo;
 import prof.jogos2D.util.*;
 
@@ -27,18 +30,56 @@ public class Jetpac extends JFrame {
 	// último nível suportado
 	private static final int lastLevel = 8;
 
+	// diretório onde estão as imagens dos elementos
+	private static final String dirArt = "data/art/";
+
+	// o próximo nível é lido em segundo plano enquanto se joga o atual, para a
+	// passagem de nível não ter de esperar pela leitura dos ficheiros
+	private ExecutorService carregador = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "carregador-niveis");
+		t.setDaemon(true);
+		return t;
+	});
+	private CompletableFuture<Mundo> proximoMundo; // o próximo nível, a ser lido
+	private int proximoNivel; // o número do nível que está a ser lido
+
+	// o pacote com os níveis já compilados, se existir
+	private PacoteNiveis pacote;
+
 	// leitor do teclado
 	private SKeyboard teclado;
 
+	// grava as teclas usadas no nível, para o jogo poder ser repetido
+	private GravadorReplay gravador;
+
+	// enquanto se carrega no R o jogo volta atrás, no máximo uns 10 segundos
+	private static final int CICLOS_HISTORICO = 10000 / ReguladorVelocidade.getIntervaloStandard();
+	private boolean recuou; // se se voltou atrás, a gravação já não serve
+
+	// o F5 guarda o jogo e o F9 volta ao jogo guardado. A escrita é feita em
+	// segundo plano, para o jogo não parar.
+	private static final String estadoRapido = "saves/rapido.jsav";
+	private ExecutorService gravadorEstados = Executors.newSingleThreadExecutor(r -> {
+		Thread t = new Thread(r, "gravador-estados");
+		t.setDaemon(true);
+		return t;
+	});
+	private CompletableFuture<Void> gravacaoEstado = CompletableFuture.completedFuture(null);
+	private DefinicaoNivel definicao; // a definição do nível atual, lida quando é precisa
+	private boolean guardarPremido, carregarPremido; // as teclas no ciclo anterior
+
+	// controla o ritmo dos ciclos: 30 ms por ciclo, o que dá umas 32 frames por
+	// segundo, recuperando no máximo 5 ciclos de cada vez após um atraso
+	private EscalonadorFixo escalonador = new EscalonadorFixo(ReguladorVelocidade.getIntervaloStandard(), 5);
+
 	// Os vários elementos visuais do jogo
 	private JPanel jContentPane = null;
-	private JPanel gameArea = null;
 	private JPanel statusPane = null;
-
-	// imagens usadas para melhorar as animações
-	private Image ecran; // o ecran onde se desenha o mundo
 	private Image statusBarImg; // a barra de status
 
+	// quem desenha o mundo no ecran
+	private Renderizador renderizador;
+
 	// fontes para escrever a pontuação, nível e vidas
 	private Font livesFont = new Font("Roman", Font.BOLD, 20);
 	private Font levelFont = new Font("Roman", Font.BOLD, 28);
@@ -47,16 +88,42 @@ public class Jetpac extends JFrame {
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * construtor da aplicação
+	 * construtor da aplicação, com o desenho passivo numa janela
 	 */
 	public Jetpac() {
+		this(false, false);
+	}
+
+	/**
+	 * construtor da aplicação
+	 * 
+	 * @param ativo         se o mundo é desenhado de forma ativa, com page flipping
+	 * @param ecranCompleto se o jogo ocupa o ecran todo (implica desenho ativo)
+	 */
+	public Jetpac(boolean ativo, boolean ecranCompleto) {
 		setTitle("JetPac by ESTertaiment");
-		initialize(); // inicializar a janela do jogo
+		if (ativo || ecranCompleto)
+			renderizador = new RenderizadorAtivo(1000, 690);
+		else
+			renderizador = new RenderizadorPassivo(1000, 690);
+		initialize(ecranCompleto); // inicializar a janela do jogo
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
 		// configurar o teclado
 		teclado = new SKeyboard();
 
+		// se os níveis foram compilados num pacote, lê-los de lá, mas só se o
+		// pacote tiver sido compilado depois da última alteração aos níveis
+		if (!CompiladorNiveis.desatualizado("data/levels/", "data/levels/niveis.pack")) {
+			try {
+				pacote = PacoteNiveis.abrir("data/levels/niveis.pack");
+			} catch (IOException e) {
+				// se o pacote não se pode usar lêem-se os ficheiros de texto
+				e.printStackTrace();
+			}
+		} else if (new File("data/levels/niveis.pack").exists())
+			System.err.println("data/levels/niveis.pack é mais antigo que os níveis, a usar os ficheiros de texto");
+
 		startGame();
 	}
 
@@ -77,14 +144,56 @@ public class Jetpac extends JFrame {
 	 * Jogar um dado nível
 	 */
 	private void playLevel() {
-		mundo = readLevel(nivel); // ler os ficheiro do nível
+		// usar o nível já lido em segundo plano, se for este, senão ler agora
+		if (proximoMundo != null && proximoNivel == nivel) {
+			try {
+				mundo = proximoMundo.join();
+			} catch (CompletionException e) {
+				// os erros da leitura em segundo plano só são mostrados aqui
+				Throwable erro = e.getCause() instanceof UncheckedIOException ? e.getCause().getCause() : e.getCause();
+				erro.printStackTrace();
+				JOptionPane.showMessageDialog(null, "Erro na leitura do nível " + nivel + ": " + erro.getMessage(),
+						"ERRO", JOptionPane.ERROR_MESSAGE);
+				System.exit(1);
+			}
+		} else
+			mundo = readLevel(nivel); // ler os ficheiro do nível
+		proximoMundo = null;
 		if (mundo == null)
 			return;
 
+		// gravar as teclas deste nível
+		gravador = new GravadorReplay(teclado::estaPremida, nivel, mundo.getSemente(), vidas);
+		recuou = false;
+		mundo.ativarHistorico(CICLOS_HISTORICO);
+		definicao = null;
+
+		// começar já a ler o nível seguinte
+		if (nivel < lastLevel)
+			preloadLevel(nivel + 1);
+
 		// fazer o reset do nível, para ficar tudo reiniciado
 		resetLevel();
 	}
 
+	/**
+	 * Começa a ler um nível em segundo plano. O mundo lido fica à espera que o
+	 * nível seja jogado. Se a leitura falhar o erro fica no mundo lido e só é
+	 * mostrado quando o nível for jogado.
+	 * 
+	 * @param level o nível a ler
+	 */
+	private void preloadLevel(int level) {
+		proximoNivel = level;
+		proximoMundo = CompletableFuture.supplyAsync(() -> {
+			try {
+				return new WorldReader(dirArt).carregarMundo(pacote, level, "data/levels/level" + level + ".txt");
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, carregador);
+	}
+
 	/**
 	 * inicia/reinicia um nível
 	 */
@@ -92,6 +201,12 @@ public class Jetpac extends JFrame {
 		// iniciar o mundo
 		mundo.play();
 
+		// não se pode recuar para antes de perder a vida
+		mundo.limparHistorico();
+
+		// o ecran tem de ser todo redesenhado
+		renderizador.invalidar();
+
 		// Criar o atualizador que vai atualizar o jogo 30x por segundo
 		Actualizador actualiza = new Actualizador();
 		actualiza.start();
@@ -100,33 +215,91 @@ public class Jetpac extends JFrame {
 	/**
 	 * Lê as informações do nível no respectivo ficheiro.
 	 * O ficheiro dos níveis está no diretório levels e tem a terminação txt.
+	 * Se existir o pacote de níveis, o nível é lido do pacote.
 	 * 
 	 * @param nivel o nível a ler
 	 * @return o mundo representado neste nível
 	 */
 	private Mundo readLevel(int level) {
 		String file = "data/levels/level" + level + ".txt"; // ficehiro onde está o nível
-		String dirArt = "data/art/"; // diretório onde estão as imagens dos elementos
 
 		// criar o leitor de mundos para ler o mundo
 		WorldReader wr = new WorldReader(dirArt);
+		if (pacote != null && pacote.temNivel(level))
+			return wr.lerMundo(pacote, level);
 		return wr.lerMundo(file);
 	}
 
 	/**
-	 * método que vai ser usado para desenhar os componentes do jogo.
+	 * Lê a definição de um nível, do pacote de níveis se existir ou do ficheiro
+	 * de texto
 	 * 
-	 * @param g elemento onde se vai desenhar.
+	 * @param level o nível a ler
+	 * @return a definição do nível
+	 * @throws IOException se houver erros na leitura
 	 */
-	private void drawGameArea(Graphics2D g) {
-		// passar para graphics2D pois este é mais avançado
-		Graphics2D ge = (Graphics2D) ecran.getGraphics();
+	private DefinicaoNivel lerDefinicao(int level) throws IOException {
+		if (pacote != null && pacote.temNivel(level))
+			return DefinicaoNivel.dePacote(pacote, level);
+		return DefinicaoNivel.deFicheiro(level, "data/levels/level" + level + ".txt");
+	}
 
-		// desenhar o mundo
-		mundo.draw(ge);
+	/**
+	 * Guarda o jogo no ficheiro de estado rápido. O estado do mundo é copiado
+	 * já, mas o ficheiro é escrito em segundo plano.
+	 */
+	private void guardarEstadoRapido() {
+		EstadoGuardado estado;
+		try {
+			// a definição só se lê quando o nível é guardado pela primeira vez
+			if (definicao == null)
+				definicao = lerDefinicao(nivel);
+			mundo.setMarcador(pontuacao, vidas);
+			estado = EstadoGuardado.capturar(definicao, mundo);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		new File(estadoRapido).getParentFile().mkdirs();
+		gravacaoEstado = estado.guardar(estadoRapido, gravadorEstados).exceptionally(e -> {
+			e.printStackTrace();
+			return null;
+		});
+	}
 
-		// está tudo desenhado na imagem auxiliar, desenhar essa imagem no ecrán
-		g.drawImage(ecran, 0, 0, null);
+	/**
+	 * Volta ao jogo guardado no ficheiro de estado rápido, se existir. O mundo
+	 * é criado a partir da definição guardada, sem ler o ficheiro do nível.
+	 * Enquanto o estado está a ser escrito não se pode voltar a ele.
+	 */
+	private void carregarEstadoRapido() {
+		// não se espera pela escrita, para o jogo não parar
+		if (!gravacaoEstado.isDone()) {
+			System.err.println("o jogo ainda está a ser guardado");
+			return;
+		}
+		if (!new File(estadoRapido).exists())
+			return;
+		EstadoGuardado estado;
+		try {
+			estado = EstadoGuardado.ler(estadoRapido);
+			mundo = estado.restaurar(dirArt);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		definicao = estado.getDefinicao();
+		nivel = estado.getNivel();
+		pontuacao = mundo.getPontuacao();
+		vidas = mundo.getVidas();
+		mundo.ativarHistorico(CICLOS_HISTORICO);
+		// a gravação das teclas do nível já não reproduz o jogo
+		recuou = true;
+
+		// o nível seguinte pode já não ser o que está a ser lido
+		if (nivel < lastLevel && (proximoMundo == null || proximoNivel != nivel + 1))
+			preloadLevel(nivel + 1);
+		renderizador.invalidar();
 	}
 
 	/**
@@ -159,32 +332,34 @@ public class Jetpac extends JFrame {
 
 	/**
 	 * método chamado a cada ciclo de processamento para atualizar os elementos do
-	 * jogo. Atenção! Este método NÃO desenha nada. Usar o método drawGameArea para
-	 * isso.
+	 * jogo. Atenção! Este método NÃO desenha nada. Quem desenha é o renderizador.
 	 */
 	private void updateGame() {
-		Astronauta astro = mundo.getAstronaut();
-
-		// ver as teclas premidas
-		// subir?
-		astro.setRising(teclado.estaPremida(KeyEvent.VK_Q));
-		// disparar?
-		astro.setShooting(teclado.estaPremida(KeyEvent.VK_A));
-		// a andar? se sim para que lado?
-		if (teclado.estaPremida(KeyEvent.VK_N)) {
-			astro.setDirection(Astronauta.LEFT);
-			astro.setWalking(true);
-		} else if (teclado.estaPremida(KeyEvent.VK_M)) {
-			astro.setDirection(Astronauta.RIGHT);
-			astro.setWalking(true);
-		} else
-			astro.setWalking(false);
+		// guardar e carregar o jogo só quando se carrega na tecla
+		boolean guardar = teclado.estaPremida(KeyEvent.VK_F5);
+		boolean carregar = teclado.estaPremida(KeyEvent.VK_F9);
+		if (guardar && !guardarPremido)
+			guardarEstadoRapido();
+		if (carregar && !carregarPremido)
+			carregarEstadoRapido();
+		guardarPremido = guardar;
+		carregarPremido = carregar;
+
+		// com o R premido o mundo recua um ciclo em vez de avançar
+		if (teclado.estaPremida(KeyEvent.VK_R) && mundo.recuar(1)) {
+			pontuacao = mundo.getPontuacao();
+			vidas = mundo.getVidas();
+			recuou = true;
+			renderizador.invalidar();
+			return;
+		}
 
-		if (teclado.estaPremida(KeyEvent.VK_Z))
-			astro.drop();
+		// ver as teclas premidas e aplicá-las ao astronauta
+		FonteTeclado.aplicar(gravador, mundo.getAstronaut());
 
 		// actualizar mundo e ver quanto se pontuou neste ciclo
 		// update world and add the score of this cicle
+		mundo.setMarcador(pontuacao, vidas);
 		pontuacao += mundo.update();
 	}
 
@@ -194,20 +369,19 @@ public class Jetpac extends JFrame {
 	 */
 	class Actualizador extends Thread {
 		public void run() {
-			long mili = System.currentTimeMillis();
-			long target = mili + ReguladorVelocidade.getIntervaloStandard();
+			escalonador.iniciar();
 			do {
-				updateGame();
-				gameArea.repaint();
+				// fazer os ciclos em atraso (normalmente só 1) e só depois desenhar
+				int ciclos = escalonador.esperar();
+				for (int i = 0; i < ciclos && !mundo.isCompleted() && !mundo.isOver(); i++)
+					updateGame();
+				renderizador.desenhar(mundo);
 				statusPane.repaint();
-				// esperar 30 milisegundos o que dá umas 32 frames por segundo
-				while (mili < target)
-					mili = ReguladorVelocidade.tempoRelativo();
-				target = mili + ReguladorVelocidade.getIntervaloStandard();
 				// enquanto o mundo não estiver completo ou acabado
 			} while (!mundo.isCompleted() && !mundo.isOver());
 			// se o nível estiver completo passa ao próximo
 			if (mundo.isCompleted()) {
+				guardarReplay();
 				if (nivel == lastLevel) {
 					opcoesFinais("Ganhou o jogo! Que deseja fazer?", "GANHOU, GANHOU, GANHOU");
 				} else {
@@ -218,6 +392,7 @@ public class Jetpac extends JFrame {
 				// se perdeu uma vida, atualizar as vidas e recomeçar ou terminar o jogo
 				vidas--;
 				if (vidas == 0) {
+					guardarReplay();
 					opcoesFinais("Game Over! Que deseja fazer?", "GAME OVER");
 				} else
 					resetLevel();
@@ -225,6 +400,25 @@ public class Jetpac extends JFrame {
 		}
 	}
 
+	/**
+	 * Guarda a gravação do nível que acabou no diretório replays, para poder
+	 * ser repetido com o SimuladorHeadless. Um erro na gravação não impede o
+	 * jogo de continuar. Se o jogador voltou atrás no nível não há gravação.
+	 */
+	private void guardarReplay() {
+		// depois de voltar atrás as teclas gravadas já não reproduzem o jogo
+		if (recuou)
+			return;
+		File dir = new File("replays");
+		dir.mkdirs();
+		String file = new File(dir, "nivel" + nivel + "-" + System.currentTimeMillis() + ".jrp").getPath();
+		try {
+			gravador.guardar(file);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Apresenta as opções finais, quer tenha ganho ou perdido o jogo
 	 * 
@@ -246,35 +440,12 @@ public class Jetpac extends JFrame {
 		}
 	}
 
-	/**
-	 * Este método inicializa a zonaJogo
-	 */
-	private JPanel getGameArea() {
-		if (gameArea == null) {
-			gameArea = new JPanel() {
-				public void paintComponent(Graphics g) {
-					drawGameArea((Graphics2D) g);
-				}
-			};
-			Dimension d = new Dimension(1000, 690);
-			gameArea.setPreferredSize(d);
-			gameArea.setSize(d);
-			gameArea.setMinimumSize(d);
-			gameArea.setBackground(Color.BLACK);
-		}
-		return gameArea;
-	}
-
 	/**
 	 * vai inicializar a aplicação
+	 * 
+	 * @param ecranCompleto se a janela deve ocupar o ecran todo
 	 */
-	private void initialize() {
-		// criar a imagem para melhorar as animações e configurá-la para isso mesmo
-		ecran = new BufferedImage(1000, 750, BufferedImage.TYPE_4BYTE_ABGR);
-		Graphics2D ge = (Graphics2D) ecran.getGraphics();
-		ge.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-		ge.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
+	private void initialize(boolean ecranCompleto) {
 		// ler a imagem para a barra de estado
 		try {
 			statusBarImg = ImageIO.read(new File("data/art/statusbar.gif"));
@@ -288,9 +459,20 @@ public class Jetpac extends JFrame {
 		this.setLocationRelativeTo(null);
 		this.setContentPane(getJContentPane());
 		this.setTitle("JetPac by ESTertainement");
+		GraphicsDevice ecranFisico = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+		boolean exclusivo = ecranCompleto && ecranFisico.isFullScreenSupported();
+		// em ecran completo a janela não tem decorações
+		this.setUndecorated(exclusivo);
 		this.pack();
 		this.setResizable(false);
 		this.setLocationRelativeTo(null);
+		if (exclusivo)
+			ecranFisico.setFullScreenWindow(this);
+		else
+			this.setVisible(true);
+
+		// só com a janela montada se podem preparar os buffers de desenho
+		renderizador.iniciar();
 	}
 
 	/**
@@ -301,7 +483,7 @@ public class Jetpac extends JFrame {
 			jContentPane = new JPanel();
 			jContentPane.setLayout(new BorderLayout());
 			jContentPane.add(getStatusBar(), BorderLayout.NORTH);
-			jContentPane.add(getGameArea(), BorderLayout.CENTER);
+			jContentPane.add(renderizador.getComponente(), BorderLayout.CENTER);
 		}
 		return jContentPane;
 	}
@@ -321,8 +503,20 @@ public class Jetpac extends JFrame {
 		return statusPane;
 	}
 
+	/**
+	 * Arranca o jogo. Opções: -ativo para desenhar com page flipping, e
+	 * -ecrancompleto para jogar em ecran completo (também usa o desenho ativo)
+	 */
 	public static void main(String args[]) {
-		Jetpac ce = new Jetpac();
-		ce.setVisible(true);
+		boolean ativo = false;
+		boolean ecranCompleto = false;
+		for (String a : args) {
+			if (a.equals("-ativo"))
+				ativo = true;
+			else if (a.equals("-ecrancompleto"))
+				ecranCompleto = true;
+		}
+		// a janela fica visível logo ao ser montada, em initialize
+		new Jetpac(ativo, ecranCompleto);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package jetpac.app;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Repete as teclas gravadas por um GravadorReplay. Serve de fonte de teclas
+ * em vez do teclado: com o mesmo nível e a mesma semente o jogo volta a
+ * acontecer exatamente igual. Quando a gravação acaba não há teclas premidas.
+ */
+public class LeitorReplay implements FonteTeclado {
+
+	private int nivel; // o nível gravado
+	private long semente; // a semente do mundo gravado
+	private int vidas; // vidas no início do nível
+	private long ciclos; // número de ciclos gravados
+
+	private ByteBuffer sequencias; // as sequências de teclas
+	private int mascaraAtual; // as teclas do ciclo atual
+	private long restantes; // ciclos que faltam com a máscara atual
+	private long ciclosLidos; // ciclos já repetidos
+
+	/**
+	 * Cria o leitor a partir de uma gravação
+	 * 
+	 * @param bytes a gravação, no formato dos ficheiros de replay
+	 * @throws IOException se a gravação não for válida
+	 */
+	public LeitorReplay(byte bytes[]) throws IOException {
+		ByteBuffer b = ByteBuffer.wrap(bytes);
+		if (b.remaining() < 18 || b.getInt() != GravadorReplay.MAGIA)
+			throw new IOException("não é uma gravação de jogo");
+		byte versao = b.get();
+		if (versao != GravadorReplay.VERSAO)
+			throw new IOException("versão " + versao + " da gravação não suportada");
+		nivel = b.getInt();
+		semente = b.getLong();
+		vidas = b.get();
+		ciclos = lerVarint(b);
+		sequencias = b.slice();
+	}
+
+	/**
+	 * lê uma gravação de um ficheiro
+	 * 
+	 * @param file o ficheiro com a gravação
+	 * @return o leitor da gravação
+	 * @throws IOException se houver erros na leitura ou a gravação não for
+	 *                     válida
+	 */
+	public static LeitorReplay ler(String file) throws IOException {
+		return new LeitorReplay(Files.readAllBytes(Path.of(file)));
+	}
+
+	@Override
+	public void proximoCiclo() {
+		if (restantes == 0) {
+			if (!sequencias.hasRemaining()) {
+				// a gravação acabou
+				mascaraAtual = 0;
+				return;
+			}
+			mascaraAtual = sequencias.get();
+			restantes = lerVarint(sequencias);
+		}
+		restantes--;
+		ciclosLidos++;
+	}
+
+	@Override
+	public boolean estaPremida(int tecla) {
+		return (mascaraAtual & FonteTeclado.mascara(tecla)) != 0;
+	}
+
+	/**
+	 * indica se todos os ciclos gravados já foram repetidos
+	 * 
+	 * @return true se a gravação acabou
+	 */
+	public boolean terminou() {
+		return ciclosLidos >= ciclos;
+	}
+
+	public int getNivel() {
+		return nivel;
+	}
+
+	public long getSemente() {
+		return semente;
+	}
+
+	public int getVidas() {
+		return vidas;
+	}
+
+	public long getCiclos() {
+		return ciclos;
+	}
+
+	/**
+	 * lê um inteiro escrito com 7 bits por byte
+	 */
+	private static long lerVarint(ByteBuffer b) {
+		long v = 0;
+		int desloca = 0;
+		byte x;
+		do {
+			x = b.get();
+			v |= (long) (x & 0x7F) << desloca;
+			desloca += 7;
+		} while ((x & 0x80) != 0);
+		return v;
+	}
+}
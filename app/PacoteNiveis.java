@@ -0,0 +1,222 @@
+package jetpac.app;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Um pacote com vários níveis num só ficheiro binário, criado pelo
+ * CompiladorNiveis. O ficheiro é mapeado em memória e cada nível só é lido
+ * quando é pedido, diretamente do mapa e sem análise de texto. Os números são
+ * lidos do mapa; só os nomes das imagens são copiados, para novas Strings.
+ * <p>
+ * Formato (inteiros em big-endian):
+ * 
+ * <pre>
+ * int   MAGIA ("JPAK")
+ * short VERSAO
+ * int   número de níveis
+ * para cada nível: int nível, int início da secção, int tamanho da secção
+ * as secções, uma por nível: registos (byte etiqueta + campos) até FIM
+ * </pre>
+ * 
+ * As imagens não são empacotadas: os componentes do prof.jogos2D só as
+ * carregam a partir do ficheiro, por isso os registos guardam apenas o nome.
+ */
+public class PacoteNiveis {
+
+	static final int MAGIA = 0x4A50414B;
+	static final short VERSAO = 1;
+
+	// etiquetas dos registos
+	static final byte FIM = 0;
+	static final byte MUNDO = 1;
+	static final byte NAVE = 2;
+	static final byte PARTE = 3;
+	static final byte ASTRONAUTA = 4;
+	static final byte FUEL = 5;
+	static final byte PLATAFORMA = 6;
+	static final byte INIMIGOS = 7;
+	static final byte TESOUROS = 8;
+	static final byte TESOURO = 9;
+
+	private final MappedByteBuffer mapa; // o ficheiro todo, mapeado em memória
+	private final int niveis[]; // os níveis do pacote
+	private final int inicios[]; // onde começa a secção de cada nível
+	private final int tamanhos[]; // tamanho da secção de cada nível
+
+	private PacoteNiveis(MappedByteBuffer mapa, int niveis[], int inicios[], int tamanhos[]) {
+		this.mapa = mapa;
+		this.niveis = niveis;
+		this.inicios = inicios;
+		this.tamanhos = tamanhos;
+	}
+
+	/**
+	 * Abre um pacote de níveis. Só o índice é lido.
+	 * 
+	 * @param file o ficheiro do pacote
+	 * @return o pacote aberto
+	 * @throws IOException se o ficheiro não existir ou não for um pacote
+	 */
+	public static PacoteNiveis abrir(String file) throws IOException {
+		MappedByteBuffer mapa;
+		// o mapa continua válido depois de o canal ser fechado
+		try (FileChannel canal = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+			mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+		}
+		ByteBuffer b = mapa.duplicate();
+		if (b.remaining() < 10 || b.getInt() != MAGIA)
+			throw new IOException(file + " não é um pacote de níveis");
+		short versao = b.getShort();
+		if (versao != VERSAO)
+			throw new IOException(file + ": versão " + versao + " não suportada");
+		int n = b.getInt();
+		int niveis[] = new int[n];
+		int inicios[] = new int[n];
+		int tamanhos[] = new int[n];
+		for (int i = 0; i < n; i++) {
+			niveis[i] = b.getInt();
+			inicios[i] = b.getInt();
+			tamanhos[i] = b.getInt();
+			if (inicios[i] < 0 || tamanhos[i] < 0 || inicios[i] + tamanhos[i] > mapa.capacity())
+				throw new IOException(file + ": secção do nível " + niveis[i] + " fora do ficheiro");
+		}
+		return new PacoteNiveis(mapa, niveis, inicios, tamanhos);
+	}
+
+	/**
+	 * indica se o pacote tem o nível indicado
+	 * 
+	 * @param nivel o nível
+	 * @return true se o pacote tem o nível
+	 */
+	public boolean temNivel(int nivel) {
+		return indice(nivel) != -1;
+	}
+
+	/**
+	 * retorna a secção de um nível, partilhando a memória do mapa
+	 * 
+	 * @param nivel o nível
+	 * @return a secção do nível, só de leitura
+	 */
+	public ByteBuffer getSeccao(int nivel) {
+		int i = indice(nivel);
+		if (i == -1)
+			throw new IllegalArgumentException("o pacote não tem o nível " + nivel);
+		// cada pedido tem a sua vista, para poder ser lido em várias threads
+		return mapa.duplicate().position(inicios[i]).limit(inicios[i] + tamanhos[i]).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Lê um nível e passa a informação ao construtor
+	 * 
+	 * @param nivel      o nível a ler
+	 * @param construtor quem recebe a informação do nível
+	 * @throws IOException se a secção estiver corrompida ou houver erros nas
+	 *                     imagens
+	 */
+	public void lerNivel(int nivel, ConstrutorNivel construtor) throws IOException {
+		lerSeccao(getSeccao(nivel), construtor);
+	}
+
+	/**
+	 * Lê a secção de um nível e passa a informação ao construtor
+	 * 
+	 * @param b          a secção do nível
+	 * @param construtor quem recebe a informação do nível
+	 * @throws IOException se a secção estiver corrompida ou houver erros nas
+	 *                     imagens
+	 */
+	public static void lerSeccao(ByteBuffer b, ConstrutorNivel construtor) throws IOException {
+		while (true) {
+			byte etiqueta = b.get();
+			switch (etiqueta) {
+				case FIM:
+					construtor.fim();
+					return;
+				case MUNDO:
+					construtor.mundo(b.getInt(), b.getInt(), texto(b), b.getInt(), b.getInt());
+					break;
+				case NAVE:
+					construtor.nave(b.getInt(), b.getInt(), b.getInt(), texto(b), b.getInt(), b.getInt());
+					break;
+				case PARTE:
+					construtor.parteNave(b.getInt(), b.getInt(), b.getInt(), texto(b), b.getInt(), b.getInt());
+					break;
+				case ASTRONAUTA:
+					construtor.astronauta(b.getInt(), b.getInt(), texto(b), b.getInt());
+					break;
+				case FUEL:
+					construtor.fuel(b.getInt(), b.getInt(), b.getInt(), texto(b), b.getInt(), b.getInt());
+					break;
+				case PLATAFORMA:
+					construtor.plataforma(b.getInt(), b.getInt(), texto(b), b.getInt(), b.getInt());
+					break;
+				case INIMIGOS:
+					construtor.inimigos(b.getInt(), b.getInt(), b.getInt(), texto(b), texto(b), b.getInt(), b.getInt());
+					break;
+				case TESOUROS:
+					construtor.tesouros(b.getInt(), b.getInt(), b.getInt());
+					break;
+				case TESOURO:
+					construtor.tesouro(b.getInt(), b.getInt(), b.getInt(), texto(b), b.getInt(), b.getInt());
+					break;
+				default:
+					throw new IOException("registo desconhecido " + etiqueta + " na posição " + (b.position() - 1));
+			}
+		}
+	}
+
+	/**
+	 * lê um texto em UTF-8, precedido do número de bytes
+	 */
+	private static String texto(ByteBuffer b) {
+		byte bytes[] = new byte[b.getShort() & 0xFFFF];
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Escreve um pacote de níveis
+	 * 
+	 * @param file    o ficheiro onde escrever
+	 * @param niveis  os números dos níveis
+	 * @param seccoes a secção de cada nível, criada pelo EscritorNivel
+	 * @throws IOException se houver erros na escrita
+	 */
+	public static void escrever(String file, int niveis[], byte seccoes[][]) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(MAGIA);
+			out.writeShort(VERSAO);
+			out.writeInt(niveis.length);
+			int inicio = 4 + 2 + 4 + niveis.length * 12;
+			for (int i = 0; i < niveis.length; i++) {
+				out.writeInt(niveis[i]);
+				out.writeInt(inicio);
+				out.writeInt(seccoes[i].length);
+				inicio += seccoes[i].length;
+			}
+			for (byte s[] : seccoes)
+				out.write(s);
+		}
+	}
+
+	/**
+	 * retorna a posição do nível no índice, ou -1 se não existir
+	 */
+	private int indice(int nivel) {
+		for (int i = 0; i < niveis.length; i++)
+			if (niveis[i] == nivel)
+				return i;
+		return -1;
+	}
+}
@@ -0,0 +1,40 @@
+package jetpac.app;
+
+import java.awt.Component;
+
+import jetpac.mundo.Mundo;
+
+/**
+ * Define a forma como o mundo é desenhado no ecrã. O jogo pode usar um
+ * desenho passivo, em que o Swing decide quando pintar, ou um desenho ativo,
+ * em que é a thread do jogo que mostra cada frame.
+ */
+public interface Renderizador {
+
+	/**
+	 * retorna o componente visual onde o mundo é desenhado, para ser colocado
+	 * na janela
+	 * 
+	 * @return o componente onde se desenha o mundo
+	 */
+	public Component getComponente();
+
+	/**
+	 * prepara o desenho. É chamado depois de a janela ter sido montada.
+	 */
+	public void iniciar();
+
+	/**
+	 * Desenha uma frame do mundo. É chamado pela thread do jogo depois de cada
+	 * atualização.
+	 * 
+	 * @param mundo o mundo a desenhar
+	 */
+	public void desenhar(Mundo mundo);
+
+	/**
+	 * indica que a próxima frame tem de ser toda redesenhada, por exemplo
+	 * porque o mundo mudou
+	 */
+	public void invalidar();
+}
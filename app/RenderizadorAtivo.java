@@ -0,0 +1,85 @@
+package jetpac.app;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+
+import jetpac.mundo.Mundo;
+
+/**
+ * Desenho ativo: a thread do jogo desenha cada frame diretamente no buffer de
+ * trás de um BufferStrategy e mostra-o de imediato (page flipping), sem
+ * passar pela fila de eventos do Swing. Os buffers são criados pelo sistema
+ * gráfico e compatíveis com o ecrã, por isso podem ser acelerados. Como o
+ * conteúdo do buffer de trás não é garantido após cada troca, cada frame é
+ * sempre desenhada por completo.
+ */
+public class RenderizadorAtivo implements Renderizador {
+
+	private Canvas canvas; // onde se desenha o jogo
+	private BufferStrategy estrategia; // os buffers do canvas
+
+	/**
+	 * Cria o renderizador
+	 * 
+	 * @param comp comprimento da zona de jogo
+	 * @param alt  altura da zona de jogo
+	 */
+	public RenderizadorAtivo(int comp, int alt) {
+		canvas = new Canvas();
+		// quem desenha é a thread do jogo, os pedidos de pintura do sistema são ignorados
+		canvas.setIgnoreRepaint(true);
+		Dimension d = new Dimension(comp, alt);
+		canvas.setPreferredSize(d);
+		canvas.setSize(d);
+		canvas.setMinimumSize(d);
+		canvas.setBackground(Color.BLACK);
+	}
+
+	@Override
+	public Component getComponente() {
+		return canvas;
+	}
+
+	/**
+	 * cria os buffers. O canvas já tem de estar numa janela montada.
+	 */
+	@Override
+	public void iniciar() {
+		canvas.createBufferStrategy(2);
+		estrategia = canvas.getBufferStrategy();
+	}
+
+	@Override
+	public void desenhar(Mundo mundo) {
+		if (estrategia == null)
+			return;
+		do {
+			do {
+				Graphics2D g = (Graphics2D) estrategia.getDrawGraphics();
+				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+				g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				g.setColor(Color.BLACK);
+				g.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+				mundo.draw(g);
+				g.dispose();
+				// se o conteúdo dos buffers foi reposto é preciso desenhar outra vez
+			} while (estrategia.contentsRestored());
+			estrategia.show();
+			// se o conteúdo se perdeu é preciso desenhar tudo outra vez
+		} while (estrategia.contentsLost());
+
+		// garantir que a frame chega já ao ecrã
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	@Override
+	public void invalidar() {
+		// cada frame já é desenhada por completo
+	}
+}
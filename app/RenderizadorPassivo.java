@@ -0,0 +1,107 @@
+package jetpac.app;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JPanel;
+
+import jetpac.mundo.Mundo;
+import jetpac.mundo.ZonasSujas;
+
+/**
+ * Desenho passivo: a thread do jogo desenha cada frame numa imagem auxiliar e
+ * pede ao Swing que pinte as zonas que mudaram. O Swing pinta quando achar
+ * melhor, sempre a partir da última frame completa.
+ */
+public class RenderizadorPassivo implements Renderizador {
+
+	private JPanel gameArea; // o painel onde se pinta o jogo
+
+	// imagens usadas para melhorar as animações: o jogo desenha o mundo numa
+	// imagem enquanto o Swing pinta no ecran a frame anterior
+	private TriploBuffer ecran; // o ecran onde se desenha o mundo
+	private ZonasSujas zonasSujas; // zonas do ecran que mudaram entre frames
+
+	/**
+	 * Cria o renderizador
+	 * 
+	 * @param comp comprimento da zona de jogo
+	 * @param alt  altura da zona de jogo
+	 */
+	public RenderizadorPassivo(int comp, int alt) {
+		ecran = new TriploBuffer(comp, alt, BufferedImage.TYPE_4BYTE_ABGR);
+		zonasSujas = new ZonasSujas(comp, alt, 32, ecran.getNumImagens());
+
+		gameArea = new JPanel() {
+			// isto é para não dar warnings
+			private static final long serialVersionUID = 1L;
+
+			public void paintComponent(Graphics g) {
+				drawGameArea((Graphics2D) g);
+			}
+		};
+		Dimension d = new Dimension(comp, alt);
+		gameArea.setPreferredSize(d);
+		gameArea.setSize(d);
+		gameArea.setMinimumSize(d);
+		gameArea.setBackground(Color.BLACK);
+	}
+
+	@Override
+	public Component getComponente() {
+		return gameArea;
+	}
+
+	@Override
+	public void iniciar() {
+		// não é preciso preparar nada
+	}
+
+	/**
+	 * Desenha o mundo na imagem auxiliar e publica-a para ser pintada. É
+	 * chamado pela thread do jogo depois de cada atualização, por isso não
+	 * precisa de sincronizar com o mundo. Só se redesenham e pintam as zonas
+	 * que mudaram.
+	 */
+	@Override
+	public void desenhar(Mundo mundo) {
+		// ver que zonas mudaram desde a frame que está na imagem
+		zonasSujas.novaFrame();
+		mundo.marcarZonas(zonasSujas);
+		Shape clip = zonasSujas.getClip(ecran.getIndiceEscrita());
+
+		Graphics2D ge = ecran.iniciarEscrita();
+		if (clip != null)
+			ge.setClip(clip);
+		mundo.draw(ge);
+		ge.dispose();
+		ecran.publicar();
+
+		// pintar no ecran apenas a zona que mudou
+		gameArea.repaint(zonasSujas.getZonaEcra());
+	}
+
+	@Override
+	public void invalidar() {
+		zonasSujas.invalidar();
+	}
+
+	/**
+	 * método que vai ser usado para desenhar os componentes do jogo. Pinta
+	 * apenas a última frame completa, sem mexer no mundo.
+	 * 
+	 * @param g elemento onde se vai desenhar.
+	 */
+	private void drawGameArea(Graphics2D g) {
+		Image frame = ecran.iniciarLeitura();
+		if (frame != null)
+			g.drawImage(frame, 0, 0, null);
+		ecran.terminarLeitura();
+	}
+}
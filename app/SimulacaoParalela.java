@@ -0,0 +1,217 @@
+package jetpac.app;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import jetpac.mundo.Mundo;
+
+/**
+ * Corre muitas simulações independentes em paralelo, uma por cada combinação
+ * de nível, semente e jogador (bot), para avaliar o equilíbrio dos níveis.
+ * Os níveis são lidos uma só vez e cada simulação cria o seu mundo a partir
+ * da definição. As simulações são divididas por uma ForkJoinPool, que
+ * distribui o trabalho pelos processadores, e os resultados são somados em
+ * acumuladores sem bloqueios.
+ */
+public class SimulacaoParalela {
+
+	// abaixo deste número de simulações não compensa dividir o trabalho
+	private static final int LIMIAR = 4;
+
+	private String artDir; // diretório das imagens
+	private List<DefinicaoNivel> niveis = new ArrayList<>();
+	private List<String> nomesBots = new ArrayList<>();
+	private List<Supplier<FonteTeclado>> bots = new ArrayList<>();
+	private long maxCiclos; // ciclos máximos de cada simulação
+	private int vidas; // vidas de cada simulação
+
+	/**
+	 * Resultados somados das simulações de um nível com um bot
+	 */
+	public static class Estatisticas {
+		private final LongAdder corridas = new LongAdder();
+		private final LongAdder completos = new LongAdder();
+		private final LongAdder ciclos = new LongAdder();
+		private final LongAdder pontos = new LongAdder();
+		private final LongAdder vidasPerdidas = new LongAdder();
+
+		private void juntar(boolean completo, long ciclos, int pontos, int vidasPerdidas) {
+			corridas.increment();
+			if (completo)
+				completos.increment();
+			this.ciclos.add(ciclos);
+			this.pontos.add(pontos);
+			this.vidasPerdidas.add(vidasPerdidas);
+		}
+
+		public long getCorridas() {
+			return corridas.sum();
+		}
+
+		public long getCompletos() {
+			return completos.sum();
+		}
+
+		public long getCiclos() {
+			return ciclos.sum();
+		}
+
+		public long getPontos() {
+			return pontos.sum();
+		}
+
+		public long getVidasPerdidas() {
+			return vidasPerdidas.sum();
+		}
+	}
+
+	/**
+	 * Cria a simulação
+	 * 
+	 * @param artDir    diretório das imagens
+	 * @param maxCiclos número máximo de ciclos de cada simulação
+	 * @param vidas     vidas de cada simulação
+	 */
+	public SimulacaoParalela(String artDir, long maxCiclos, int vidas) {
+		this.artDir = artDir;
+		this.maxCiclos = maxCiclos;
+		this.vidas = vidas;
+	}
+
+	/**
+	 * adiciona um nível a simular
+	 * 
+	 * @param nivel a definição do nível
+	 */
+	public void adicionarNivel(DefinicaoNivel nivel) {
+		niveis.add(nivel);
+	}
+
+	/**
+	 * adiciona um bot. O fornecedor é chamado uma vez por simulação, para cada
+	 * uma ter a sua fonte de teclas.
+	 * 
+	 * @param nome nome do bot, para os resultados
+	 * @param bot  cria a fonte das teclas de cada simulação
+	 */
+	public void adicionarBot(String nome, Supplier<FonteTeclado> bot) {
+		nomesBots.add(nome);
+		bots.add(bot);
+	}
+
+	/**
+	 * Corre todas as combinações de nível, semente e bot
+	 * 
+	 * @param sementes as sementes a usar
+	 * @param pool     onde correr as simulações
+	 * @return os resultados, indexados por nível e por bot
+	 */
+	public Estatisticas[][] correr(long sementes[], ForkJoinPool pool) {
+		Estatisticas res[][] = new Estatisticas[niveis.size()][bots.size()];
+		for (Estatisticas porNivel[] : res)
+			for (int b = 0; b < porNivel.length; b++)
+				porNivel[b] = new Estatisticas();
+		long total = (long) niveis.size() * sementes.length * bots.size();
+		pool.invoke(new Tarefa(sementes, res, 0, total));
+		return res;
+	}
+
+	/**
+	 * Um conjunto de simulações, identificadas por um intervalo de índices.
+	 * Cada índice corresponde a uma combinação de nível, semente e bot.
+	 */
+	private class Tarefa extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long sementes[];
+		private final Estatisticas res[][];
+		private final long inicio, fim;
+
+		Tarefa(long sementes[], Estatisticas res[][], long inicio, long fim) {
+			this.sementes = sementes;
+			this.res = res;
+			this.inicio = inicio;
+			this.fim = fim;
+		}
+
+		@Override
+		protected void compute() {
+			if (fim - inicio <= LIMIAR) {
+				for (long i = inicio; i < fim; i++)
+					simular(i);
+				return;
+			}
+			long meio = (inicio + fim) >>> 1;
+			invokeAll(new Tarefa(sementes, res, inicio, meio), new Tarefa(sementes, res, meio, fim));
+		}
+
+		private void simular(long indice) {
+			int b = (int) (indice % bots.size());
+			long resto = indice / bots.size();
+			long semente = sementes[(int) (resto % sementes.length)];
+			int n = (int) (resto / sementes.length);
+			Mundo m;
+			try {
+				m = niveis.get(n).criarMundo(artDir, semente);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			SimuladorHeadless sim = new SimuladorHeadless(m, bots.get(b).get(), vidas);
+			boolean completo = sim.correr(maxCiclos);
+			res[n][b].juntar(completo, sim.getCiclos(), sim.getPontuacao(), vidas - sim.getVidas());
+		}
+	}
+
+	/**
+	 * Simula os níveis com vários guiões de teclas e apresenta os resultados.
+	 * Os argumentos são: número de sementes, número máximo de ciclos, primeiro
+	 * e último nível, e os guiões de teclas (ver TecladoScript).
+	 */
+	public static void main(String args[]) throws IOException {
+		int nSementes = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long maxCiclos = args.length > 1 ? Long.parseLong(args[1]) : 20000;
+		int primeiro = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+		int ultimo = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+		SimulacaoParalela sim = new SimulacaoParalela("data/art/", maxCiclos, 5);
+		for (int nivel = primeiro; nivel <= ultimo; nivel++)
+			sim.adicionarNivel(DefinicaoNivel.deFicheiro(nivel, "data/levels/level" + nivel + ".txt"));
+		if (args.length > 4) {
+			for (int i = 4; i < args.length; i++) {
+				String guiao = args[i];
+				sim.adicionarBot(guiao, () -> new TecladoScript(guiao));
+			}
+		} else {
+			sim.adicionarBot("QM:40,A:20,QN:40,Z:5", () -> new TecladoScript("QM:40,A:20,QN:40,Z:5"));
+		}
+
+		long sementes[] = new long[nSementes];
+		for (int i = 0; i < nSementes; i++)
+			sementes[i] = i + 1;
+
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		long inicio = System.nanoTime();
+		Estatisticas res[][] = sim.correr(sementes, pool);
+		long nanos = System.nanoTime() - inicio;
+
+		long totalCiclos = 0;
+		for (int n = 0; n < res.length; n++) {
+			for (int b = 0; b < res[n].length; b++) {
+				Estatisticas e = res[n][b];
+				totalCiclos += e.getCiclos();
+				System.out.printf("nivel %d, bot %s: %d corridas, %.1f%% completos, %.0f pontos, %.2f vidas perdidas%n",
+						sim.niveis.get(n).getNivel(), sim.nomesBots.get(b), e.getCorridas(),
+						100.0 * e.getCompletos() / e.getCorridas(), (double) e.getPontos() / e.getCorridas(),
+						(double) e.getVidasPerdidas() / e.getCorridas());
+			}
+		}
+		System.out.printf("total: %d ciclos em %.1f s, %.0f ciclos/s com %d threads%n", totalCiclos, nanos / 1e9,
+				totalCiclos * 1e9 / Math.max(nanos, 1), pool.getParallelism());
+	}
+}
@@ -0,0 +1,191 @@
+package jetpac.app;
+
+import java.io.IOException;
+
+import jetpac.mundo.Mundo;
+
+/**
+ * Corre os níveis do jogo sem janela e sem esperas, o mais depressa que o
+ * processador permitir. As teclas vêm de uma fonte simulada em vez do
+ * teclado. Serve para fazer testes de equilíbrio e de regressão aos níveis.
+ */
+public class SimuladorHeadless {
+
+	private Mundo mundo; // o mundo a simular
+	private FonteTeclado teclado; // de onde vêm as teclas
+	private int vidas; // vidas que restam
+	private int pontuacao; // pontuação obtida
+	private long ciclos; // ciclos já simulados
+	private boolean aMeio; // se o mundo foi reposto a meio do nível
+
+	/**
+	 * Cria o simulador para um dado mundo
+	 * 
+	 * @param mundo   o mundo a simular
+	 * @param teclado a fonte das teclas
+	 * @param vidas   o número de vidas disponíveis
+	 */
+	public SimuladorHeadless(Mundo mundo, FonteTeclado teclado, int vidas) {
+		this.mundo = mundo;
+		this.teclado = teclado;
+		this.vidas = vidas;
+	}
+
+	/**
+	 * Simula o nível até estar completo, até acabarem as vidas ou até se
+	 * atingir o número máximo de ciclos.
+	 * 
+	 * @param maxCiclos número máximo de ciclos a simular
+	 * @return true, se o nível foi completado
+	 */
+	public boolean correr(long maxCiclos) {
+		// um mundo reposto continua de onde estava
+		if (!aMeio)
+			mundo.play();
+		aMeio = false;
+		while (ciclos < maxCiclos) {
+			FonteTeclado.aplicar(teclado, mundo.getAstronaut());
+			pontuacao += mundo.update();
+			ciclos++;
+			if (mundo.isCompleted())
+				return true;
+			if (mundo.isOver()) {
+				// tal como no jogo, perde uma vida e recomeça o nível
+				vidas--;
+				if (vidas == 0)
+					return false;
+				mundo.play();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * retorna o número de ciclos já simulados
+	 * 
+	 * @return o número de ciclos simulados
+	 */
+	public long getCiclos() {
+		return ciclos;
+	}
+
+	/**
+	 * retorna a pontuação obtida
+	 * 
+	 * @return a pontuação obtida
+	 */
+	public int getPontuacao() {
+		return pontuacao;
+	}
+
+	/**
+	 * retorna as vidas que restam
+	 * 
+	 * @return as vidas que restam
+	 */
+	public int getVidas() {
+		return vidas;
+	}
+
+	/**
+	 * Repete um jogo gravado pelo GravadorReplay e apresenta o resultado. A
+	 * gravação acaba no ciclo em que o nível acabou, por isso a repetição tem
+	 * de acabar o nível exatamente quando a gravação acaba.
+	 * 
+	 * @param file o ficheiro com a gravação
+	 * @throws IOException           se houver erros na leitura da gravação
+	 * @throws IllegalStateException se a repetição não acabar o nível no mesmo
+	 *                               ciclo que o jogo gravado
+	 */
+	public static void repetir(String file) throws IOException {
+		LeitorReplay replay = LeitorReplay.ler(file);
+		WorldReader wr = new WorldReader("data/art/", replay.getSemente());
+		Mundo m = wr.lerMundo("data/levels/level" + replay.getNivel() + ".txt");
+		SimuladorHeadless sim = new SimuladorHeadless(m, replay, replay.getVidas());
+
+		long inicio = System.nanoTime();
+		boolean completo = sim.correr(replay.getCiclos());
+		long nanos = System.nanoTime() - inicio;
+		System.out.printf("replay do nivel %d: %s, %d ciclos, %d pontos, %d vidas, %.0f ciclos/s%n", replay.getNivel(),
+				completo ? "completo" : "incompleto", sim.getCiclos(), sim.getPontuacao(), sim.getVidas(),
+				sim.getCiclos() * 1e9 / Math.max(nanos, 1));
+
+		// o nível tem de acabar (completo ou sem vidas) no último ciclo gravado
+		boolean acabou = completo || sim.getVidas() == 0;
+		if (!acabou || !replay.terminou() || sim.getCiclos() != replay.getCiclos())
+			throw new IllegalStateException("a repetição não reproduz o jogo gravado: o nível "
+					+ (acabou ? "acabou no ciclo " + sim.getCiclos() : "não acabou") + " e a gravação tem "
+					+ replay.getCiclos() + " ciclos");
+	}
+
+	/**
+	 * Continua um jogo guardado com o EstadoGuardado e apresenta o resultado
+	 * 
+	 * @param file      o ficheiro com o jogo guardado
+	 * @param guiao     o guião das teclas a usar
+	 * @param maxCiclos número máximo de ciclos a simular
+	 * @throws IOException se houver erros na leitura do jogo guardado
+	 */
+	public static void continuar(String file, String guiao, long maxCiclos) throws IOException {
+		EstadoGuardado estado = EstadoGuardado.ler(file);
+		Mundo m = estado.restaurar("data/art/");
+		SimuladorHeadless sim = new SimuladorHeadless(m, new TecladoScript(guiao), m.getVidas());
+		sim.pontuacao = m.getPontuacao();
+		sim.aMeio = true;
+
+		long inicio = System.nanoTime();
+		boolean completo = sim.correr(maxCiclos);
+		long nanos = System.nanoTime() - inicio;
+		System.out.printf("jogo guardado do nivel %d: %s, %d ciclos, %d pontos, %d vidas, %.0f ciclos/s%n",
+				estado.getNivel(), completo ? "completo" : "incompleto", sim.getCiclos(), sim.getPontuacao(),
+				sim.getVidas(), sim.getCiclos() * 1e9 / Math.max(nanos, 1));
+	}
+
+	/**
+	 * Corre os níveis indicados e apresenta os ciclos por segundo obtidos. Os
+	 * argumentos são: guião de teclas, número máximo de ciclos por nível, os
+	 * níveis a correr (por omissão todos) e a semente dos números aleatórios
+	 * (por omissão 1, para as corridas serem comparáveis). Se o primeiro
+	 * argumento for um ficheiro de replay (.jrp), repete o jogo gravado. Se for
+	 * um jogo guardado (.jsav), continua-o com o guião do segundo argumento
+	 * durante o número de ciclos do terceiro.
+	 */
+	public static void main(String args[]) throws IOException {
+		if (args.length > 0 && args[0].endsWith(".jrp")) {
+			repetir(args[0]);
+			return;
+		}
+		if (args.length > 0 && args[0].endsWith(".jsav")) {
+			continuar(args[0], args.length > 1 ? args[1] : "QM:40,A:20,QN:40,Z:5",
+					args.length > 2 ? Long.parseLong(args[2]) : 100000);
+			return;
+		}
+		String guiao = args.length > 0 ? args[0] : "QM:40,A:20,QN:40,Z:5";
+		long maxCiclos = args.length > 1 ? Long.parseLong(args[1]) : 100000;
+		int primeiro = 1, ultimo = 8;
+		if (args.length > 2)
+			primeiro = ultimo = Integer.parseInt(args[2]);
+		if (args.length > 3)
+			ultimo = Integer.parseInt(args[3]);
+		long semente = args.length > 4 ? Long.parseLong(args[4]) : 1;
+
+		long totalCiclos = 0;
+		long totalNanos = 0;
+		for (int nivel = primeiro; nivel <= ultimo; nivel++) {
+			WorldReader wr = new WorldReader("data/art/", semente);
+			Mundo m = wr.lerMundo("data/levels/level" + nivel + ".txt");
+			SimuladorHeadless sim = new SimuladorHeadless(m, new TecladoScript(guiao), 5);
+
+			long inicio = System.nanoTime();
+			boolean completo = sim.correr(maxCiclos);
+			long nanos = System.nanoTime() - inicio;
+
+			totalCiclos += sim.getCiclos();
+			totalNanos += nanos;
+			System.out.printf("nivel %d: %s, %d ciclos, %d pontos, %d vidas, %.0f ciclos/s%n", nivel,
+					completo ? "completo" : "incompleto", sim.getCiclos(), sim.getPontuacao(), sim.getVidas(),
+					sim.getCiclos() * 1e9 / Math.max(nanos, 1));
+		}
+		System.out.printf("total: %d ciclos, %.0f ciclos/s%n", totalCiclos, totalCiclos * 1e9 / Math.max(totalNanos, 1));
+	}
+}
@@ -0,0 +1,49 @@
+package jetpac.app;
+
+/**
+ * Teclado simulado que segue um guião. O guião é uma sequência de passos
+ * separados por vírgulas, no formato teclas:ciclos, por exemplo
+ * "QM:20,A:10,:5". As teclas são as letras usadas no jogo (Q, A, N, M, Z) e
+ * um passo sem teclas representa ciclos sem nada premido. Quando o guião
+ * acaba recomeça do início.
+ */
+public class TecladoScript implements FonteTeclado {
+
+	private int teclas[]; // máscara das teclas premidas em cada passo
+	private int duracoes[]; // número de ciclos de cada passo
+	private int passo; // passo atual
+	// ciclos já feitos no passo atual; começa em -1 porque proximoCiclo é
+	// chamado antes do primeiro ciclo
+	private int ciclosNoPasso = -1;
+
+	/**
+	 * Cria o teclado a partir do guião
+	 * 
+	 * @param guiao o guião a seguir
+	 */
+	public TecladoScript(String guiao) {
+		String passos[] = guiao.split(",");
+		teclas = new int[passos.length];
+		duracoes = new int[passos.length];
+		for (int i = 0; i < passos.length; i++) {
+			String p[] = passos[i].trim().split(":");
+			for (char ch : p[0].toUpperCase().toCharArray())
+				teclas[i] |= FonteTeclado.mascara(ch);
+			duracoes[i] = p.length > 1 ? Integer.parseInt(p[1]) : 1;
+		}
+	}
+
+	@Override
+	public void proximoCiclo() {
+		ciclosNoPasso++;
+		if (ciclosNoPasso >= duracoes[passo]) {
+			ciclosNoPasso = 0;
+			passo = (passo + 1) % teclas.length;
+		}
+	}
+
+	@Override
+	public boolean estaPremida(int tecla) {
+		return (teclas[passo] & FonteTeclado.mascara(tecla)) != 0;
+	}
+}
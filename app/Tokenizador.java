@@ -0,0 +1,244 @@
+package jetpac.app;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Lê os ficheiros de texto dos níveis campo a campo, sem criar objetos por
+ * cada campo. O texto é lido em blocos para um buffer e cada linha útil é
+ * copiada, já sem espaços, para outro buffer que é reutilizado. Os inteiros
+ * são lidos diretamente dos caracteres e as chaves comparadas no buffer.
+ * <p>
+ * Formato de uma linha: {@code chave = valor, valor, ...} ou só
+ * {@code valor, valor, ...}. Linhas vazias ou começadas por # são ignoradas.
+ * Os erros indicam a linha e a coluna onde ocorreram.
+ */
+class Tokenizador {
+
+	private Reader in; // de onde vem o texto
+	private char entrada[] = new char[8192]; // bloco lido do ficheiro
+	private int posEntrada, fimEntrada; // parte do bloco ainda por usar
+
+	private char linha[] = new char[256]; // a linha atual, sem espaços
+	private int colunas[] = new int[256]; // coluna original de cada caracter
+	private int tamLinha; // número de caracteres na linha
+	private int pos; // próximo caracter a ler na linha
+	private int fimChave; // onde acaba a chave da linha (-1 se não tem)
+	private int numLinha; // número da linha atual no ficheiro
+	private boolean depoisCR; // a última linha acabou num \r, um \n a seguir é ignorado
+
+	// textos já criados, para repetir o mesmo objeto quando o texto se repete
+	private String textos[] = new String[64];
+
+	/**
+	 * Cria um tokenizador sem texto, que tem de ser iniciado com reiniciar
+	 */
+	public Tokenizador() {
+	}
+
+	/**
+	 * passa a ler um novo texto, reaproveitando os buffers
+	 * 
+	 * @param in de onde vem o texto
+	 */
+	public void reiniciar(Reader in) {
+		this.in = in;
+		posEntrada = fimEntrada = 0;
+		tamLinha = pos = 0;
+		fimChave = -1;
+		numLinha = 0;
+		depoisCR = false;
+	}
+
+	/**
+	 * Avança para a próxima linha com informação, ignorando linhas vazias e
+	 * comentários
+	 * 
+	 * @return false se o texto acabou
+	 * @throws IOException se houver erros na leitura
+	 */
+	public boolean proximaLinha() throws IOException {
+		do {
+			if (!carregarLinha())
+				return false;
+		} while (tamLinha == 0 || linha[0] == '#');
+		pos = 0;
+		fimChave = -1;
+		return true;
+	}
+
+	/**
+	 * copia a próxima linha do texto para o buffer da linha, sem os espaços.
+	 * As linhas podem acabar em \n, \r\n ou só \r.
+	 */
+	private boolean carregarLinha() throws IOException {
+		tamLinha = 0;
+		int coluna = 0;
+		boolean leuAlgo = false;
+		while (true) {
+			if (posEntrada == fimEntrada) {
+				fimEntrada = in.read(entrada, 0, entrada.length);
+				posEntrada = 0;
+				if (fimEntrada <= 0) {
+					fimEntrada = 0;
+					if (leuAlgo)
+						numLinha++;
+					return leuAlgo;
+				}
+			}
+			char ch = entrada[posEntrada++];
+			// o \n de um \r\n, que pode vir já no bloco seguinte
+			if (depoisCR) {
+				depoisCR = false;
+				if (ch == '\n')
+					continue;
+			}
+			leuAlgo = true;
+			coluna++;
+			if (ch == '\n' || ch == '\r') {
+				depoisCR = ch == '\r';
+				numLinha++;
+				return true;
+			}
+			if (ch == '\t' || Character.isSpaceChar(ch))
+				continue;
+			if (tamLinha == linha.length) {
+				linha = Arrays.copyOf(linha, linha.length * 2);
+				colunas = Arrays.copyOf(colunas, colunas.length * 2);
+			}
+			colunas[tamLinha] = coluna;
+			linha[tamLinha++] = ch;
+		}
+	}
+
+	/**
+	 * lê a chave da linha, até ao =, e posiciona a leitura a seguir ao =
+	 * 
+	 * @throws IOException se a linha não tiver =
+	 */
+	public void lerChave() throws IOException {
+		int i = pos;
+		while (i < tamLinha && linha[i] != '=')
+			i++;
+		if (i == tamLinha)
+			throw erro(pos, "esperava chave=valores");
+		fimChave = i;
+		pos = i + 1;
+	}
+
+	/**
+	 * indica se a chave da linha começa pelo texto indicado
+	 * 
+	 * @param prefixo o texto a comparar
+	 * @return true se a chave começa por prefixo
+	 */
+	public boolean chaveComeca(String prefixo) {
+		if (fimChave < prefixo.length())
+			return false;
+		for (int i = 0; i < prefixo.length(); i++)
+			if (linha[i] != prefixo.charAt(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * lê um inteiro e a vírgula que se lhe segue, se existir
+	 * 
+	 * @return o inteiro lido
+	 * @throws IOException se não houver um inteiro válido nesta posição
+	 */
+	public int lerInt() throws IOException {
+		int inicio = pos;
+		boolean negativo = pos < tamLinha && linha[pos] == '-';
+		if (negativo)
+			pos++;
+		long valor = 0;
+		int digitos = 0;
+		while (pos < tamLinha && linha[pos] >= '0' && linha[pos] <= '9') {
+			valor = valor * 10 + (linha[pos++] - '0');
+			if (valor > Integer.MAX_VALUE + 1L)
+				throw erro(inicio, "inteiro demasiado grande");
+			digitos++;
+		}
+		if (digitos == 0 || (pos < tamLinha && linha[pos] != ','))
+			throw erro(inicio, "esperava um inteiro");
+		if (negativo)
+			valor = -valor;
+		if (valor > Integer.MAX_VALUE)
+			throw erro(inicio, "inteiro demasiado grande");
+		saltarVirgula();
+		return (int) valor;
+	}
+
+	/**
+	 * lê um texto (até à próxima vírgula ou fim da linha) e a vírgula que se
+	 * lhe segue, se existir. Textos repetidos retornam o mesmo objeto.
+	 * 
+	 * @return o texto lido
+	 * @throws IOException se o texto estiver vazio
+	 */
+	public String lerTexto() throws IOException {
+		int inicio = pos;
+		int hash = 0;
+		while (pos < tamLinha && linha[pos] != ',')
+			hash = 31 * hash + linha[pos++];
+		int n = pos - inicio;
+		if (n == 0)
+			throw erro(inicio, "esperava um texto");
+		saltarVirgula();
+
+		// ver se o texto já foi criado antes
+		int idx = (hash ^ (hash >>> 16)) & (textos.length - 1);
+		String s = textos[idx];
+		if (s == null || !igual(s, inicio, n)) {
+			s = new String(linha, inicio, n);
+			textos[idx] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * compara um texto com uma parte da linha
+	 */
+	private boolean igual(String s, int inicio, int n) {
+		if (s.length() != n)
+			return false;
+		for (int i = 0; i < n; i++)
+			if (s.charAt(i) != linha[inicio + i])
+				return false;
+		return true;
+	}
+
+	private void saltarVirgula() {
+		if (pos < tamLinha && linha[pos] == ',')
+			pos++;
+	}
+
+	/**
+	 * retorna o número da linha atual
+	 * 
+	 * @return o número da linha atual
+	 */
+	public int getLinha() {
+		return numLinha;
+	}
+
+	/**
+	 * cria um erro com a linha e a coluna da posição indicada
+	 */
+	private IOException erro(int posicao, String msg) {
+		int coluna = posicao < tamLinha ? colunas[posicao] : (tamLinha > 0 ? colunas[tamLinha - 1] + 1 : 1);
+		return new IOException("linha " + numLinha + ", coluna " + coluna + ": " + msg);
+	}
+
+	/**
+	 * cria um erro na posição atual
+	 * 
+	 * @param msg a mensagem de erro
+	 * @return o erro, para ser lançado
+	 */
+	public IOException erro(String msg) {
+		return erro(pos, msg);
+	}
+}
@@ -0,0 +1,104 @@
+package jetpac.app;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+
+/**
+ * Conjunto de três imagens que permite à thread do jogo desenhar uma frame
+ * enquanto a thread do Swing pinta a frame anterior, sem que nenhuma delas
+ * tenha de esperar pela outra. Em cada momento uma imagem está a ser
+ * desenhada pelo jogo, outra é a última frame completa e a terceira pode
+ * estar a ser pintada no ecrã.
+ */
+public class TriploBuffer {
+
+	private final BufferedImage imagens[] = new BufferedImage[3];
+	private BufferedImage emEscrita; // onde o jogo está a desenhar (só a thread do jogo lhe mexe)
+	private volatile BufferedImage publicada; // última frame completa
+	private volatile BufferedImage emLeitura; // frame que está a ser pintada no ecrã
+
+	/**
+	 * Cria as três imagens
+	 * 
+	 * @param comp comprimento das imagens
+	 * @param alt  altura das imagens
+	 * @param tipo o tipo de BufferedImage a usar
+	 */
+	public TriploBuffer(int comp, int alt, int tipo) {
+		for (int i = 0; i < imagens.length; i++)
+			imagens[i] = new BufferedImage(comp, alt, tipo);
+		emEscrita = imagens[0];
+	}
+
+	/**
+	 * Começa a desenhar uma nova frame. Só deve ser usado pela thread do jogo.
+	 * 
+	 * @return onde desenhar a frame (tem de ser libertado com dispose)
+	 */
+	public Graphics2D iniciarEscrita() {
+		Graphics2D g = emEscrita.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		return g;
+	}
+
+	/**
+	 * indica em qual das três imagens se vai desenhar a próxima frame
+	 * 
+	 * @return o índice da imagem (0 a 2)
+	 */
+	public int getIndiceEscrita() {
+		for (int i = 0; i < imagens.length; i++)
+			if (imagens[i] == emEscrita)
+				return i;
+		return -1;
+	}
+
+	/**
+	 * retorna o número de imagens usadas
+	 * 
+	 * @return o número de imagens
+	 */
+	public int getNumImagens() {
+		return imagens.length;
+	}
+
+	/**
+	 * A frame que estava a ser desenhada está completa e passa a ser a que
+	 * vai ser pintada. Só deve ser usado pela thread do jogo.
+	 */
+	public void publicar() {
+		publicada = emEscrita;
+		// escolher uma imagem que não seja a publicada nem a que está a ser pintada
+		BufferedImage lida = emLeitura;
+		for (BufferedImage img : imagens)
+			if (img != publicada && img != lida) {
+				emEscrita = img;
+				break;
+			}
+	}
+
+	/**
+	 * Obtém a última frame completa para a pintar. Enquanto não for chamado
+	 * terminarLeitura, esta imagem não é alterada pela thread do jogo.
+	 * 
+	 * @return a última frame completa, ou null se ainda não houver nenhuma
+	 */
+	public BufferedImage iniciarLeitura() {
+		BufferedImage img;
+		do {
+			img = publicada;
+			emLeitura = img;
+			// se entretanto foi publicada outra frame, usar essa
+		} while (img != publicada);
+		return img;
+	}
+
+	/**
+	 * indica que a frame obtida por iniciarLeitura já foi pintada
+	 */
+	public void terminarLeitura() {
+		emLeitura = null;
+	}
+}
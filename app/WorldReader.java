@@ -1,23 +1,12 @@
 package jetpac.app;
 
-import java.awt.Point;
-import java.awt.Rectangle;
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 
 import javax.swing.JOptionPane;
 
-import jetpac.astro.Astronauta;
-import jetpac.astro.Plataforma;
-import jetpac.astro.Spaceship;
-import jetpac.drag.SpaceshipPart;
-import jetpac.generator.EnemyGenerator;
-import jetpac.generator.FuelGenerator;
-import jetpac.generator.TreasureGenerator;
-import jetpac.generator.TreasureInfo;
 import jetpac.mundo.Mundo;
-import prof.jogos2D.image.*;
 
 /**
  * Classe que faz a leitura dos ficheiros dos níveis
@@ -27,11 +16,15 @@ public class WorldReader {
 	// o diretório onde estão os ficheiros com as imagens
 	private String artDir;
 
-	// o mundo a ser criado
-	private Mundo world;
+	// semente dos mundos criados, se foi indicada
+	private boolean temSemente;
+	private long semente;
 
-	// linha a ler, para indicar onde se deu o erro
-	private int linhaAtual;
+	// quem recebe a informação do nível
+	private ConstrutorNivel construtor;
+
+	// lê o texto do nível, reaproveitado entre níveis
+	private Tokenizador tok = new Tokenizador();
 
 	/**
 	 * Cria a WorldReader com que vai ler as imagens no directório especificado
@@ -42,6 +35,27 @@ public class WorldReader {
 		this.artDir = artDir;
 	}
 
+	/**
+	 * Cria a WorldReader com que vai ler as imagens no directório especificado,
+	 * e cujos mundos usam a semente indicada, para os jogos poderem ser
+	 * repetidos
+	 * 
+	 * @param artDir  the folder where the art files are
+	 * @param semente semente dos números aleatórios dos mundos criados
+	 */
+	public WorldReader(String artDir, long semente) {
+		this.artDir = artDir;
+		this.semente = semente;
+		temSemente = true;
+	}
+
+	/**
+	 * cria o construtor para um novo mundo
+	 */
+	private ConstrutorMundo novoConstrutor() {
+		return temSemente ? new ConstrutorMundo(artDir, semente) : new ConstrutorMundo(artDir);
+	}
+
 	/**
 	 * Lê o mundo especificado no ficheiro indicado. Para saber o formato do
 	 * ficheiro ler o ficheiro do nível 1
@@ -50,242 +64,228 @@ public class WorldReader {
 	 * @return o mundo correspondente ao nível lido.
 	 */
 	public Mundo lerMundo(String file) {
-		linhaAtual = 0;
-		// cria um mundo novo, vazio
-		world = new Mundo();
+		ConstrutorMundo cm = novoConstrutor();
+		lerNivel(file, cm);
+		return cm.getMundo();
+	}
 
+	/**
+	 * Lê o mundo de um nível guardado num pacote de níveis
+	 * 
+	 * @param pacote o pacote com os níveis
+	 * @param nivel  o nível a ler
+	 * @return o mundo correspondente ao nível lido.
+	 */
+	public Mundo lerMundo(PacoteNiveis pacote, int nivel) {
+		ConstrutorMundo cm = novoConstrutor();
 		try {
-			// abrir o ficheiro do nível
-			BufferedReader in = new BufferedReader(new FileReader(file));
-
-			// ler uma linha
-			String line = leProximaInformacao(in);
-			while (line != null) {
-				// separar o = do resto da informação da linha
-				String cmd[] = line.split("=");
-
-				String tipoInfo = cmd[0]; // tipoInfo é o comando (lado esquerdo do =)
-				String data = cmd[1]; // data é a informação a ler
+			pacote.lerNivel(nivel, cm);
+		} catch (Exception e) {
+			// caso tenha acontecido algo de errado ao ler o nível
+			e.printStackTrace();
+			JOptionPane.showMessageDialog(null, "Erro na leitura do nível " + nivel + " do pacote", "ERRO",
+					JOptionPane.ERROR_MESSAGE);
+			System.exit(1);
+		}
+		return cm.getMundo();
+	}
 
-				// ver qual a informação e processá-la
-				if (tipoInfo.startsWith("mundo"))
-					LerMundoConfig(data);
-				else if (tipoInfo.startsWith("nave"))
-					lerNave(data, in);
-				else if (tipoInfo.startsWith("astronauta"))
-					lerAstronauta(data);
-				else if (tipoInfo.startsWith("fuel"))
-					lerFuel(data);
-				else if (tipoInfo.startsWith("plataformas"))
-					lerPlataformas(data, in);
-				else if (tipoInfo.startsWith("inimigos"))
-					lerInimigos(data);
-				else if (tipoInfo.startsWith("tesouros"))
-					lerTesouros(data, in);
-				line = leProximaInformacao(in);
+	/**
+	 * Lê o mundo de um nível, do pacote de níveis se este tiver o nível, senão
+	 * do ficheiro indicado. Ao contrário de lerMundo, os erros não são
+	 * mostrados nem terminam o programa, são lançados, por isso este método pode
+	 * ser usado fora da thread do jogo.
+	 * 
+	 * @param pacote o pacote com os níveis, ou null se não houver pacote
+	 * @param nivel  o nível a ler
+	 * @param file   o ficheiro com o nível, usado se não estiver no pacote
+	 * @return o mundo correspondente ao nível lido.
+	 * @throws IOException se houver erros na leitura
+	 */
+	public Mundo carregarMundo(PacoteNiveis pacote, int nivel, String file) throws IOException {
+		ConstrutorMundo cm = novoConstrutor();
+		if (pacote != null && pacote.temNivel(nivel))
+			pacote.lerNivel(nivel, cm);
+		else {
+			try (Reader in = new FileReader(file)) {
+				lerNivel(in, cm);
 			}
+		}
+		return cm.getMundo();
+	}
+
+	/**
+	 * Lê o nível especificado no ficheiro indicado e passa a informação ao
+	 * construtor indicado.
+	 * 
+	 * @param file       o ficheiro com o nível.
+	 * @param construtor quem recebe a informação do nível
+	 */
+	public void lerNivel(String file, ConstrutorNivel construtor) {
+		try (Reader in = new FileReader(file)) {
+			lerNivel(in, construtor);
 		} catch (Exception e) {
 			// caso tenha acontecido algo de errado ao ler o ficheiro de nível
 			e.printStackTrace();
-			JOptionPane.showMessageDialog(null, "Erro na leitura do ficheiro " + file + " linha " + linhaAtual, "ERRO",
-					JOptionPane.ERROR_MESSAGE);
+			JOptionPane.showMessageDialog(null, "Erro na leitura do ficheiro " + file + " linha " + tok.getLinha(),
+					"ERRO", JOptionPane.ERROR_MESSAGE);
 			System.exit(1);
 		}
-		return world;
 	}
 
 	/**
-	 * lê a informação sobre um ficheiro de imagem
+	 * Lê o nível do texto indicado e passa a informação ao construtor indicado.
 	 * 
-	 * @param info   a informação a processar.
-	 * @param offset onde começar a ler a informação.
-	 * @return a imagem correspondente à info.
-	 * @throws IOException se algo ocorrer na leitura do ficheiro
+	 * @param in         o texto com o nível.
+	 * @param construtor quem recebe a informação do nível
+	 * @throws IOException se houver erros na leitura, com a linha e coluna do
+	 *                     erro
 	 */
-	private ComponenteVisual lerImagem(String info[], int offset, Point p) throws IOException {
-		String imgFile = artDir + info[offset];
-		int nFrames = Integer.parseInt(info[offset + 1]);
-		int delay = Integer.parseInt(info[offset + 2]);
-		if (nFrames == 0)
-			return new ComponenteSimples(p, imgFile);
-		else
-			return new ComponenteAnimado(p, imgFile, nFrames, delay);
+	public void lerNivel(Reader in, ConstrutorNivel construtor) throws IOException {
+		this.construtor = construtor;
+		tok.reiniciar(in);
+
+		// ler linha a linha
+		while (tok.proximaLinha()) {
+			// a chave é o comando (lado esquerdo do =)
+			tok.lerChave();
+
+			// ver qual a informação e processá-la
+			if (tok.chaveComeca("mundo"))
+				LerMundoConfig();
+			else if (tok.chaveComeca("nave"))
+				lerNave();
+			else if (tok.chaveComeca("astronauta"))
+				lerAstronauta();
+			else if (tok.chaveComeca("fuel"))
+				lerFuel();
+			else if (tok.chaveComeca("plataformas"))
+				lerPlataformas();
+			else if (tok.chaveComeca("inimigos"))
+				lerInimigos();
+			else if (tok.chaveComeca("tesouros"))
+				lerTesouros();
+		}
+
+		// o nível está completo
+		construtor.fim();
 	}
 
 	/**
 	 * lê a configuração do mundo
 	 * 
-	 * @param data a linha com a informação sobre o mundo
 	 * @throws IOException
 	 */
-	private void LerMundoConfig(String data) throws IOException {
-		String info[] = data.split(",");
-		int w = Integer.parseInt(info[0]); // comprimento e altura
-		int h = Integer.parseInt(info[1]);
-		world.setDimensions(w, h);
-		world.setBackground(lerImagem(info, 2, new Point()));
+	private void LerMundoConfig() throws IOException {
+		int w = tok.lerInt(); // comprimento e altura
+		int h = tok.lerInt();
+		construtor.mundo(w, h, tok.lerTexto(), tok.lerInt(), tok.lerInt());
 	}
 
 	/**
-	 * lê a configuração da nave
+	 * lê a configuração da nave e das suas partes, uma por linha
 	 * 
-	 * @param data linha com a informação.
-	 * @param in   resto das linhas com a info.
 	 * @throws IOException
 	 */
-	private void lerNave(String data, BufferedReader in) throws IOException {
-		int nParts = Integer.parseInt(data);
+	private void lerNave() throws IOException {
+		int nParts = tok.lerInt();
 		// ler a info da nave
-		String info[] = leProximaInformacao(in).split(",");
-		int x = Integer.parseInt(info[0]);
-		int y = Integer.parseInt(info[1]);
-		ComponenteVisual img = lerImagem(info, 2, new Point(x, y));
-		Spaceship nave = new Spaceship(nParts, img);
-		world.addSpaceship(nave);
+		proximaLinha();
+		int x = tok.lerInt();
+		int y = tok.lerInt();
+		construtor.nave(nParts, x, y, tok.lerTexto(), tok.lerInt(), tok.lerInt());
 		// ler a info das partes da nave
 		for (int i = 1; i < nParts; i++) {
-			info = leProximaInformacao(in).split(",");
-			x = Integer.parseInt(info[0]);
-			y = Integer.parseInt(info[1]);
-			img = lerImagem(info, 2, new Point(x, y));
-			SpaceshipPart parte = new SpaceshipPart(i, new Point(x, y), img);
-			world.addSpaceshipPart(parte);
+			proximaLinha();
+			x = tok.lerInt();
+			y = tok.lerInt();
+			construtor.parteNave(i, x, y, tok.lerTexto(), tok.lerInt(), tok.lerInt());
 		}
 	}
 
 	/**
 	 * lê a informação do astronauta
 	 * 
-	 * @param data linha com a informação
 	 * @throws IOException
 	 */
-	private void lerAstronauta(String data) throws IOException {
-		String info[] = data.split(",");
-		int x = Integer.parseInt(info[0]);
-		int y = Integer.parseInt(info[1]);
-		String file = artDir + info[2];
-		int dy = Integer.parseInt(info[3]);
-		ComponenteMultiAnimado img = new ComponenteMultiAnimado(new Point(x, y), file, 5, 5, 4);
-		Astronauta a = new Astronauta(img, new Point(x, y), dy);
-		world.setAstronauta(a);
+	private void lerAstronauta() throws IOException {
+		int x = tok.lerInt();
+		int y = tok.lerInt();
+		String file = tok.lerTexto();
+		int dy = tok.lerInt();
+		construtor.astronauta(x, y, file, dy);
 	}
 
 	/**
 	 * ler informação sobre o fuel
 	 * 
-	 * @param data linha com a informação
 	 * @throws IOException
 	 */
-	private void lerFuel(String data) throws IOException {
-		String info[] = data.split(",");
-		int nFuels = Integer.parseInt(info[0]);
-		int minTime = Integer.parseInt(info[1]);
-		int maxTime = Integer.parseInt(info[2]);
-		ComponenteVisual img = lerImagem(info, 3, new Point());
-
-		// criar o gerador de fuel e associá-lo ao mundo
-		FuelGenerator fg = new FuelGenerator(nFuels, minTime, maxTime, img, world);
-		world.setFuelGen(fg);
+	private void lerFuel() throws IOException {
+		int nFuels = tok.lerInt();
+		int minTime = tok.lerInt();
+		int maxTime = tok.lerInt();
+		construtor.fuel(nFuels, minTime, maxTime, tok.lerTexto(), tok.lerInt(), tok.lerInt());
 	}
 
 	/**
-	 * ler informação sobre plataformas
+	 * ler informação sobre plataformas, uma por linha
 	 * 
-	 * @param data linha com a informação
-	 * @param in   restantes linhas de informação
 	 * @throws IOException
 	 */
-	private void lerPlataformas(String data, BufferedReader in) throws IOException {
-		int nPlataformas = Integer.parseInt(data);
+	private void lerPlataformas() throws IOException {
+		int nPlataformas = tok.lerInt();
 		for (int i = 0; i < nPlataformas; i++) {
-			String info[] = leProximaInformacao(in).split(",");
-			int x = Integer.parseInt(info[0]);
-			int y = Integer.parseInt(info[1]);
-			ComponenteVisual img = lerImagem(info, 2, new Point(x, y));
-			Plataforma p = new Plataforma(img);
-			world.addPlatform(p);
+			proximaLinha();
+			int x = tok.lerInt();
+			int y = tok.lerInt();
+			construtor.plataforma(x, y, tok.lerTexto(), tok.lerInt(), tok.lerInt());
 		}
-		// no fim adicionar sempre o teto
-		ComponenteVazio teto = new ComponenteVazio(new Rectangle(-10, -10, world.getWidth() + 20, 10));
-		world.addPlatform(new Plataforma(teto));
 	}
 
 	/**
 	 * ler informação sobre inimigos
 	 * 
-	 * @param data linha com a informação
 	 * @throws IOException
 	 */
-	private void lerInimigos(String data) throws IOException {
-		String info[] = data.split(",");
-
-		int maxEnemys = Integer.parseInt(info[0]);
-		int enemyVel = Integer.parseInt(info[1]);
-		int enemyScore = Integer.parseInt(info[2]);
-		ComponenteMultiAnimado img;
-		String tipo = info[3];
-		String file = artDir + info[4];
-		int nFrames = Integer.parseInt(info[5]);
-		int delay = Integer.parseInt(info[6]);
-		img = new ComponenteMultiAnimado(new Point(), file, 3, nFrames, delay);
-
-		// criar o gerador de inimigos e associá-lo ao mundo
-		EnemyGenerator eg = new EnemyGenerator(tipo, maxEnemys, enemyVel, enemyScore, img, world);
-		world.setEnemyGen(eg);
+	private void lerInimigos() throws IOException {
+		int maxEnemys = tok.lerInt();
+		int enemyVel = tok.lerInt();
+		int enemyScore = tok.lerInt();
+		String tipo = tok.lerTexto();
+		String file = tok.lerTexto();
+		int nFrames = tok.lerInt();
+		int delay = tok.lerInt();
+		construtor.inimigos(maxEnemys, enemyVel, enemyScore, tipo, file, nFrames, delay);
 	}
 
 	/**
-	 * ler informação sobre tesouros
+	 * ler informação sobre tesouros, um por linha
 	 * 
-	 * @param data linha com a informação
-	 * @param in   restante informação
 	 * @throws IOException
 	 */
-	private void lerTesouros(String data, BufferedReader in) throws IOException {
-		String info[] = data.split(",");
-		int nTesouros = Integer.parseInt(info[0]);
-		int minTime = Integer.parseInt(info[1]);
-		int maxTime = Integer.parseInt(info[2]);
+	private void lerTesouros() throws IOException {
+		int nTesouros = tok.lerInt();
+		int minTime = tok.lerInt();
+		int maxTime = tok.lerInt();
 
-		TreasureInfo[] tInfo = new TreasureInfo[nTesouros];
-		TreasureGenerator tg = new TreasureGenerator(1, minTime, maxTime, tInfo, world);
+		construtor.tesouros(nTesouros, minTime, maxTime);
 		for (int i = 0; i < nTesouros; i++) {
-			String tinf[] = leProximaInformacao(in).split(",");
-			int prob = Integer.parseInt(tinf[0]);
-			int dur = Integer.parseInt(tinf[1]);
-			int pontos = Integer.parseInt(tinf[2]);
-			ComponenteVisual img = lerImagem(tinf, 3, new Point());
-			tInfo[i] = new TreasureInfo(prob, dur, pontos, img);
+			proximaLinha();
+			int prob = tok.lerInt();
+			int dur = tok.lerInt();
+			int pontos = tok.lerInt();
+			construtor.tesouro(prob, dur, pontos, tok.lerTexto(), tok.lerInt(), tok.lerInt());
 		}
-		world.setTreasureGenerator(tg);
 	}
 
 	/**
-	 * Lê uma linha de informação, ignorando comentários e linhas em branco
+	 * Avança para a próxima linha de informação, que tem de existir
 	 * 
-	 * @param in leitor do ficheiro
-	 * @throws IOException
+	 * @throws IOException se o ficheiro acabou
 	 */
-	private String leProximaInformacao(BufferedReader in) throws IOException {
-		String res = null;
-		do {
-			res = in.readLine();
-			linhaAtual++;
-			if (res == null)
-				return null;
-		} while (res.isEmpty() || res.startsWith("#"));
-
-		// limpar os espaços
-		char chs[] = new char[res.length()];
-		int nchs = 0;
-		for (int i = 0; i < res.length(); i++) {
-			char ch = res.charAt(i);
-			if (!Character.isSpaceChar(ch)) {
-				chs[nchs] = ch;
-				nchs++;
-			}
-		}
-		res = String.copyValueOf(chs, 0, nchs);
-		return res;
+	private void proximaLinha() throws IOException {
+		if (!tok.proximaLinha())
+			throw tok.erro("o ficheiro acabou antes do previsto");
 	}
 }
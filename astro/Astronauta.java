@@ -3,11 +3,12 @@ package jetpac.astro;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 import jetpac.drag.*;
 import jetpac.mundo.WorldElementDefault;
 import prof.jogos2D.image.ComponenteMultiAnimado;
-import prof.jogos2D.util.Vector2D;
 
 /**
  * Esta classe representa o astronauta do jogo. Pode andar, disparar, carregar
@@ -22,6 +23,16 @@ public class Astronauta extends WorldElementDefault {
 	public static final int RIGHT = 0;
 	public static final int LEFT = 1;
 
+	// configuração da imagem do astronauta: animações, frames e ciclos por frame
+	public static final int NUM_ANIMS = 5;
+	public static final int NUM_FRAMES = 5;
+	public static final int DELAY = 4;
+
+	// a morte dura o mesmo que a animação de morte (mais uma frame), mas é
+	// contada em ciclos do mundo e não em desenhos, para acabar da mesma forma
+	// com ou sem janela
+	private static final int CICLOS_MORTE = (NUM_FRAMES + 1) * DELAY;
+
 	private Point initialPos; // posição inicial do astronauta
 	private int dir; // direção atual
 	private boolean jetPacOn = false; // tem o jetpac ligado?
@@ -29,6 +40,7 @@ public class Astronauta extends WorldElementDefault {
 	private boolean shooting = false; // está a disparar?
 	private boolean walking = false; // está a andar?
 	private boolean dead = false; // está morto?
+	private int ciclosMorte; // ciclos passados desde que morreu
 
 	private final int shootSpeed = 4; // velocidade de disparo
 	private int nextShot = 0; // temporizador de disparo
@@ -44,6 +56,10 @@ public class Astronauta extends WorldElementDefault {
 	private Tesouro tesouro;
 	private SpaceshipPart parte;
 
+	// resultado dos testes de toque nas plataformas
+	private Plataforma.Toque toque = new Plataforma.Toque();
+	private ArrayList<Plataforma> plataformas = new ArrayList<>(); // plataformas por perto
+
 	/**
 	 * Cria o astronauta
 	 * 
@@ -135,9 +151,11 @@ public class Astronauta extends WorldElementDefault {
 
 	@Override
 	public void update() {
-		// se está morto não faz nada
-		if (dead)
+		// se está morto só conta o tempo da morte
+		if (dead) {
+			ciclosMorte++;
 			return;
+		}
 
 		// ver que movimento está a fazer
 		int dy = rising ? -VELOCIDADE_VOO : VELOCIDADE_VOO;
@@ -154,13 +172,12 @@ public class Astronauta extends WorldElementDefault {
 		setJetPacOn(true);
 
 		Rectangle astroBounds = getBounds();
-		for (Plataforma p : getWorld().getPlatforms()) {
-			Vector2D v = p.hitV(astroBounds);
-			if (v.x == 0 && v.y == 0)
+		for (Plataforma p : getWorld().getPlatformsIn(astroBounds, plataformas)) {
+			if (!p.toque(astroBounds, toque))
 				continue;
-			move((int) v.x, (int) v.y);
+			move(toque.getDx(), toque.getDy());
 			// se bateu em cima, desligar o jetpac porque pousou
-			if (v.x == 0 && v.y < 0) {
+			if (toque.getLocal() == Plataforma.LocalToque.TOP) {
 				setJetPacOn(false);
 			}
 		}
@@ -220,8 +237,8 @@ public class Astronauta extends WorldElementDefault {
 			int x = dir == LEFT ? getPosition().x : getPosition().x + getImage().getComprimento();
 			int y = getPosition().y + offsetDispY;
 
-			// criar e adicionar o laser ao mundo
-			getWorld().addLaser(new Laser(new Point(x, y), dir == LEFT ? -ranges[rangeIdx] : ranges[rangeIdx]));
+			// disparar o laser no mundo
+			getWorld().addLaser(x, y, dir == LEFT ? -ranges[rangeIdx] : ranges[rangeIdx]);
 
 			// reinicializar o contador
 			nextShot = shootSpeed;
@@ -242,6 +259,7 @@ public class Astronauta extends WorldElementDefault {
 		img.setFrameNum(0);
 		img.setCiclico(false);
 		dead = true;
+		ciclosMorte = 0;
 
 		// avisar o mundo da "morte do artista"
 		getWorld().dying();
@@ -251,14 +269,13 @@ public class Astronauta extends WorldElementDefault {
 	}
 
 	/**
-	 * informa se está completamente morto. Só está completamente morto se a
-	 * animação de morte estiver concluida
+	 * informa se está completamente morto. Só está completamente morto se já
+	 * passaram os ciclos da animação de morte
 	 * 
 	 * @return true se o astronauta está morto
 	 */
 	public boolean isDead() {
-		ComponenteMultiAnimado img = (ComponenteMultiAnimado) getImage();
-		return dead && img.numCiclosFeitos() > 1;
+		return dead && ciclosMorte > CICLOS_MORTE;
 	}
 
 	/**
@@ -267,12 +284,61 @@ public class Astronauta extends WorldElementDefault {
 	public void reset() {
 		setPosition((Point) initialPos.clone());
 		dead = false;
+		ciclosMorte = 0;
 		// coloca a animação no início
 		ComponenteMultiAnimado img = (ComponenteMultiAnimado) getImage();
 		img.setAnim(0);
 		img.setCiclico(true);
 	}
 
+	// número de bytes escritos por guardarEstado
+	public static final int TAMANHO_ESTADO = 21;
+
+	/**
+	 * guarda o estado do astronauta (ver Mundo.guardarEstado). O que está a
+	 * carregar é guardado pelos próprios elementos.
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.putInt(getPosition().x);
+		b.putInt(getPosition().y);
+		b.put((byte) dir);
+		b.put((byte) ((jetPacOn ? 1 : 0) | (rising ? 2 : 0) | (shooting ? 4 : 0) | (walking ? 8 : 0) | (dead ? 16 : 0)));
+		b.putInt(nextShot);
+		b.putInt(rangeIdx);
+		b.putShort((short) ciclosMorte);
+		b.put((byte) ((ComponenteMultiAnimado) getImage()).getAnim());
+	}
+
+	/**
+	 * repõe o estado guardado com guardarEstado. Deixa de carregar o que quer
+	 * que fosse; os elementos carregados voltam a ser apanhados pelo mundo.
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b) {
+		setPosition(new Point(b.getInt(), b.getInt()));
+		dir = b.get();
+		int flags = b.get();
+		jetPacOn = (flags & 1) != 0;
+		rising = (flags & 2) != 0;
+		shooting = (flags & 4) != 0;
+		walking = (flags & 8) != 0;
+		dead = (flags & 16) != 0;
+		nextShot = b.getInt();
+		rangeIdx = b.getInt();
+		ciclosMorte = b.getShort();
+		// a animação recomeça; a de morte não é cíclica
+		ComponenteMultiAnimado img = (ComponenteMultiAnimado) getImage();
+		img.setAnim(b.get());
+		img.setFrameNum(0);
+		img.setCiclico(!dead);
+		fuel = null;
+		tesouro = null;
+		parte = null;
+	}
+
 	public void pickFuel(Fuel f) {
 		fuel = f;
 	}
@@ -0,0 +1,260 @@
+package jetpac.astro;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import jetpac.enemy.Inimigo;
+import jetpac.mundo.Aleatorio;
+import jetpac.mundo.Mundo;
+import jetpac.mundo.ZonasSujas;
+
+/**
+ * Todos os raios laser do mundo. Os lasers são guardados num anel de
+ * capacidade fixa, com um array por atributo, e são atualizados e desenhados
+ * todos de uma vez. Como todos os lasers duram o mesmo número de ciclos, os
+ * mais antigos são sempre os primeiros a acabar, por isso retirar um laser é
+ * só avançar o início do anel. Disparar não cria objetos: se o anel estiver
+ * cheio, o laser mais antigo é substituído.
+ */
+public class Lasers {
+
+	private static final int DURACAO = 10; // duração de cada laser, em ciclos
+
+	// as cores possíveis e o estilo de linha dos lasers
+	private static final Color CORES[] = { Color.CYAN, Color.YELLOW, Color.RED, Color.GREEN };
+	private static final Stroke laserStyle = new BasicStroke(2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+	// os atributos de cada laser
+	private final double x1[], x2[]; // extremos da linha do laser
+	private final int y[]; // altura da linha do laser
+	private final int range[]; // quanto avança em cada ciclo
+	private final int lifeTime[]; // ciclos que faltam
+	private final byte cor[]; // índice da cor do laser
+
+	private int inicio; // o laser mais antigo
+	private int total; // número de lasers no anel
+
+	private Mundo world; // o mundo onde estão os lasers
+
+	// objetos reutilizados nos testes de colisão e no desenho
+	private final Line2D.Double linha = new Line2D.Double();
+	private final Rectangle zona = new Rectangle();
+	private final ArrayList<Plataforma> plataformas = new ArrayList<>();
+	private final ArrayList<Inimigo> inimigos = new ArrayList<>();
+
+	/**
+	 * Cria o anel de lasers
+	 * 
+	 * @param capacidade o número máximo de lasers ao mesmo tempo
+	 */
+	public Lasers(int capacidade) {
+		x1 = new double[capacidade];
+		x2 = new double[capacidade];
+		y = new int[capacidade];
+		range = new int[capacidade];
+		lifeTime = new int[capacidade];
+		cor = new byte[capacidade];
+	}
+
+	/**
+	 * define o mundo onde estão os lasers
+	 * 
+	 * @param w o mundo
+	 */
+	public void setWorld(Mundo w) {
+		world = w;
+	}
+
+	/**
+	 * dispara um laser
+	 * 
+	 * @param x         coordenada x do início do laser
+	 * @param y         coordenada y do laser
+	 * @param alcance   alcance do laser (negativo se for para a esquerda)
+	 * @param aleatorio gerador usado para escolher a cor
+	 */
+	public void disparar(int x, int y, int alcance, Aleatorio aleatorio) {
+		if (total == lifeTime.length) {
+			inicio = proximo(inicio);
+			total--;
+		}
+		int i = indice(total++);
+		range[i] = alcance / DURACAO;
+		lifeTime[i] = DURACAO;
+		cor[i] = (byte) aleatorio.nextInt(CORES.length);
+		x1[i] = x;
+		x2[i] = x + range[i];
+		this.y[i] = y;
+	}
+
+	/**
+	 * atualiza todos os lasers. Os que acabaram no ciclo anterior são retirados
+	 * primeiro, por isso cada laser ainda é desenhado no ciclo em que acaba.
+	 */
+	public void update() {
+		while (total > 0 && lifeTime[inicio] <= 0) {
+			inicio = proximo(inicio);
+			total--;
+		}
+
+		int largura = world.getWidth();
+		for (int n = 0, i = inicio; n < total; n++, i = proximo(i)) {
+			// movimentar o laser
+			x2[i] += range[i];
+			x1[i] += (range[i] * (lifeTime[i] > 8 ? 0 : 1));
+
+			if (x2[i] > largura)
+				x2[i] = largura;
+			if (x1[i] > largura)
+				x1[i] = largura;
+
+			// ver se ainda está ativo
+			lifeTime[i]--;
+			if (lifeTime[i] <= 0)
+				continue;
+
+			// ver se está a bater nas plataformas
+			linha.setLine(x1[i], y[i], x2[i], y[i]);
+			world.getPlatformsIn(getZona(i), plataformas);
+			for (int p = 0; p < plataformas.size(); p++) {
+				Rectangle r = plataformas.get(p).getBounds();
+				if (r.intersectsLine(linha)) {
+					x2[i] = x1[i] <= r.x ? r.x : r.x + r.width;
+					range[i] = 0;
+					linha.x2 = x2[i];
+				}
+			}
+			// ver se bate nos inimigos
+			world.getEnemiesIn(getZona(i), inimigos);
+			for (int e = 0; e < inimigos.size(); e++) {
+				Inimigo in = inimigos.get(e);
+				Rectangle r = in.getBounds();
+				if (!in.isDying() && r.intersectsLine(linha)) {
+					x2[i] = x1[i] <= r.x ? r.x : r.x + r.width;
+					linha.x2 = x2[i];
+					in.die();
+					// adicionar pontos a este ciclo
+					world.addCiclePoints(in.getScore());
+				}
+			}
+		}
+	}
+
+	/**
+	 * calcula a zona ocupada pela linha de um laser, para procurar apenas os
+	 * elementos que estão nessa zona
+	 * 
+	 * @param i o índice do laser no anel
+	 * @return a zona ocupada pelo laser
+	 */
+	private Rectangle getZona(int i) {
+		int xi = (int) Math.floor(Math.min(x1[i], x2[i]));
+		int xf = (int) Math.ceil(Math.max(x1[i], x2[i]));
+		// uma margem de 1 pixel para apanhar também os toques nas arestas
+		zona.setBounds(xi - 1, y[i] - 1, xf - xi + 3, 3);
+		return zona;
+	}
+
+	/**
+	 * desenha todos os lasers
+	 * 
+	 * @param g onde desenhar
+	 */
+	public void desenhar(Graphics2D g) {
+		if (total == 0)
+			return;
+		g.setStroke(laserStyle);
+		for (int n = 0, i = inicio; n < total; n++, i = proximo(i)) {
+			g.setColor(CORES[cor[i]]);
+			linha.setLine(x1[i], y[i], x2[i], y[i]);
+			g.draw(linha);
+		}
+	}
+
+	/**
+	 * marca nas zonas sujas o espaço ocupado pelos lasers, incluindo a
+	 * espessura da linha
+	 * 
+	 * @param z as zonas sujas
+	 */
+	public void marcar(ZonasSujas z) {
+		for (int n = 0, i = inicio; n < total; n++, i = proximo(i)) {
+			int xi = (int) Math.floor(Math.min(x1[i], x2[i]));
+			int xf = (int) Math.ceil(Math.max(x1[i], x2[i]));
+			z.marcar(xi - 2, y[i] - 2, xf - xi + 4, 4);
+		}
+	}
+
+	/**
+	 * retira todos os lasers
+	 */
+	public void limpar() {
+		inicio = 0;
+		total = 0;
+	}
+
+	/**
+	 * retorna o número de lasers
+	 * 
+	 * @return o número de lasers
+	 */
+	public int tamanho() {
+		return total;
+	}
+
+	/**
+	 * retorna o número máximo de bytes escritos por guardarEstado, com o anel
+	 * cheio
+	 * 
+	 * @return o tamanho máximo do estado dos lasers
+	 */
+	public int getTamanhoMaximoEstado() {
+		return 2 + 26 * lifeTime.length;
+	}
+
+	/**
+	 * guarda o estado dos lasers (ver Mundo.guardarEstado)
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.putShort((short) total);
+		for (int n = 0, i = inicio; n < total; n++, i = proximo(i)) {
+			b.putDouble(x1[i]);
+			b.putDouble(x2[i]);
+			b.putInt(y[i]);
+			b.putInt(range[i]);
+			b.put((byte) lifeTime[i]);
+			b.put(cor[i]);
+		}
+	}
+
+	/**
+	 * repõe o estado guardado com guardarEstado
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b) {
+		limpar();
+		for (int n = b.getShort(); n > 0; n--) {
+			int i = indice(total++);
+			x1[i] = b.getDouble();
+			x2[i] = b.getDouble();
+			y[i] = b.getInt();
+			range[i] = b.getInt();
+			lifeTime[i] = b.get();
+			cor[i] = b.get();
+		}
+	}
+
+	// o índice no anel do n-ésimo laser
+	private int indice(int n) {
+		return (inicio + n) % lifeTime.length;
+	}
+
+	private int proximo(int i) {
+		return i + 1 == lifeTime.length ? 0 : i + 1;
+	}
+}
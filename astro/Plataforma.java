@@ -1,21 +1,69 @@
 package jetpac.astro;
 
+import java.awt.Point;
 import java.awt.Rectangle;
 
+import jetpac.mundo.Entidade;
 import jetpac.mundo.WorldElementDefault;
 import prof.jogos2D.image.ComponenteVisual;
-import prof.jogos2D.util.Vector2D;
 
 /**
  * Esta classe é responsável pelas plataformas do jogo
  * 
  */
-public class Plataforma extends WorldElementDefault {
+public class Plataforma extends WorldElementDefault implements Entidade {
 
 	public static enum LocalToque {
 		NONE, TOP, RIGHT, BOTTOM, LEFT
 	}
 
+	/**
+	 * Resultado de um teste de toque numa plataforma. Cada elemento deve ter o
+	 * seu e reutilizá-lo em todos os testes, para não criar objetos a cada
+	 * ciclo.
+	 */
+	public static class Toque {
+		private LocalToque local = LocalToque.NONE; // onde tocou na plataforma
+		private int dx, dy; // deslocamento necessário para sair da plataforma
+
+		/**
+		 * indica onde tocou na plataforma
+		 * 
+		 * @return o local do toque, NONE se não tocou
+		 */
+		public LocalToque getLocal() {
+			return local;
+		}
+
+		/**
+		 * deslocamento em x para deixar de tocar na plataforma
+		 * 
+		 * @return o deslocamento em x
+		 */
+		public int getDx() {
+			return dx;
+		}
+
+		/**
+		 * deslocamento em y para deixar de tocar na plataforma
+		 * 
+		 * @return o deslocamento em y
+		 */
+		public int getDy() {
+			return dy;
+		}
+
+		private boolean definir(LocalToque local, int dx, int dy) {
+			this.local = local;
+			this.dx = dx;
+			this.dy = dy;
+			return local != LocalToque.NONE;
+		}
+	}
+
+	// rectângulo da plataforma, guardado porque as plataformas não se mexem
+	private Rectangle limites;
+
 	/**
 	 * cria uma plataforma
 	 * 
@@ -26,36 +74,58 @@ public class Plataforma extends WorldElementDefault {
 	}
 
 	/**
-	 * Testa se um rectangulo bate na plataforma. retorna um vetor com a direção de
-	 * ricochete. Se a direção for (0,0) é porque não há embate. Se for (0,y) é
-	 * porque bateu em cima (y negativo) ou em baixo (y positivo).
-	 * Se for (x,0) é porque bateu no lado esquerdo (x negativo) ou do lado direito
-	 * (x positivo)
+	 * Testa se um rectangulo bate na plataforma, sem criar objetos. O resultado
+	 * é escrito no toque indicado: o local onde bateu e o deslocamento
+	 * necessário para deixar de bater. Se bateu em cima ou em baixo o
+	 * deslocamento é (0,y), com y negativo em cima; se bateu num dos lados é
+	 * (x,0), com x negativo do lado esquerdo.
 	 * 
-	 * @param recto o rectântuglo a testar se bate na plataforma
-	 * @return um vetor com a direção de ricochete
+	 * @param recto o rectângulo a testar se bate na plataforma
+	 * @param res   onde colocar o resultado
+	 * @return true, se bateu na plataforma
 	 */
-	public Vector2D hitV(Rectangle recto) {
-		Rectangle r = getBounds();
-		Rectangle inter = r.intersection(recto);
-		if (inter.isEmpty())
-			return new Vector2D(0, 0);
+	public boolean toque(Rectangle recto, Toque res) {
+		Rectangle r = getLimites();
+		// calcular a interseção sem criar um rectângulo
+		int ix = Math.max(r.x, recto.x);
+		int iy = Math.max(r.y, recto.y);
+		int iw = Math.min(r.x + r.width, recto.x + recto.width) - ix;
+		int ih = Math.min(r.y + r.height, recto.y + recto.height) - iy;
+		if (iw <= 0 || ih <= 0)
+			return res.definir(LocalToque.NONE, 0, 0);
 		// topo
-		if (inter.height <= 6 && inter.y == r.y) {
-			return new Vector2D(0, -inter.height);
-		}
+		if (ih <= 6 && iy == r.y)
+			return res.definir(LocalToque.TOP, 0, -ih);
 		// bateu na parte inferior
-		else if (inter.height <= 6 && inter.y == recto.y) {
-			return new Vector2D(0, inter.height);
-		}
+		else if (ih <= 6 && iy == recto.y)
+			return res.definir(LocalToque.BOTTOM, 0, ih);
 		// bateu no lado esquerdo
-		else if (inter.x == r.x) {
-			return new Vector2D(-inter.width, 0);
-		}
+		else if (ix == r.x)
+			return res.definir(LocalToque.LEFT, -iw, 0);
 		// bateu no lado direito
-		else {
-			return new Vector2D(inter.width, 0);
-		}
+		else
+			return res.definir(LocalToque.RIGHT, iw, 0);
+	}
+
+	/**
+	 * retorna o rectângulo da plataforma, calculando-o só quando é preciso
+	 */
+	private Rectangle getLimites() {
+		if (limites == null)
+			limites = getBounds();
+		return limites;
+	}
+
+	@Override
+	public void setPosition(Point pos) {
+		super.setPosition(pos);
+		limites = null;
+	}
+
+	@Override
+	public void move(int dx, int dy) {
+		super.move(dx, dy);
+		limites = null;
 	}
 
 	/**
@@ -64,4 +134,11 @@ public class Plataforma extends WorldElementDefault {
 	public void update() {
 		// neste caso não faz nada
 	}
+
+	/**
+	 * as plataformas estão sempre ativas
+	 */
+	public boolean isActive() {
+		return true;
+	}
 }
@@ -3,6 +3,9 @@ package jetpac.astro;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 
 import jetpac.drag.SpaceshipPart;
 import jetpac.mundo.WorldElementDefault;
@@ -18,6 +21,7 @@ public class Spaceship extends WorldElementDefault {
 	private Rectangle dropArea; // zona de descarga da nave
 	private boolean falling = true; // está a cair?
 	private ComponenteVisual partes[];
+	private ArrayList<Plataforma> plataformas = new ArrayList<>(); // plataformas por perto
 
 	/**
 	 * Cria uma nave
@@ -64,6 +68,19 @@ public class Spaceship extends WorldElementDefault {
 			partes[i].getPosicao().translate(dx, dy);
 	}
 
+	/**
+	 * devolve o rectângulo ocupado pela nave e por todas as partes já
+	 * colocadas
+	 * 
+	 * @return o rectângulo ocupado pela nave
+	 */
+	public Rectangle getZonaOcupada() {
+		Rectangle r = partes[0].getBounds();
+		for (int i = 1; i < nextPartDue; i++)
+			r.add(partes[i].getBounds());
+		return r;
+	}
+
 	/**
 	 * devolve a zona de descarga da nave
 	 * 
@@ -107,7 +124,7 @@ public class Spaceship extends WorldElementDefault {
 
 		// cai e deteta se bateu nas plataformas
 		move(0, 2);
-		for (Plataforma p : getWorld().getPlatforms()) {
+		for (Plataforma p : getWorld().getPlatformsIn(getBounds(), plataformas)) {
 			Rectangle inter = p.getBounds().intersection(getBounds());
 			if (!inter.isEmpty()) {
 				move(0, -inter.height);
@@ -116,6 +133,50 @@ public class Spaceship extends WorldElementDefault {
 		}
 	}
 
+	/**
+	 * retorna o número máximo de bytes escritos por guardarEstado, com todas as
+	 * partes já colocadas
+	 * 
+	 * @return o tamanho máximo do estado da nave
+	 */
+	public int getTamanhoMaximoEstado() {
+		return 5 + 8 * nParts;
+	}
+
+	/**
+	 * guarda o estado da nave (ver Mundo.guardarEstado)
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.put((byte) (falling ? 1 : 0));
+		b.putInt(nextPartDue);
+		for (int i = 0; i < nextPartDue; i++) {
+			b.putInt(partes[i].getPosicao().x);
+			b.putInt(partes[i].getPosicao().y);
+		}
+	}
+
+	/**
+	 * repõe o estado guardado com guardarEstado
+	 * 
+	 * @param b     de onde ler o estado
+	 * @param todas todas as partes da nave, incluindo as já colocadas
+	 */
+	public void restaurarEstado(ByteBuffer b, List<SpaceshipPart> todas) {
+		falling = b.get() != 0;
+		nextPartDue = b.getInt();
+		for (int i = 0; i < todas.size(); i++) {
+			SpaceshipPart p = todas.get(i);
+			if (p.getPartIdx() < nextPartDue)
+				partes[p.getPartIdx()] = p.getImagem();
+		}
+		for (int i = 0; i < nextPartDue; i++)
+			partes[i].setPosicao(new Point(b.getInt(), b.getInt()));
+		// a zona de descarga depende da posição da nave
+		dropArea = null;
+	}
+
 	/**
 	 * adiciona uma parte à nave.
 	 * 
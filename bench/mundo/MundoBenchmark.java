@@ -0,0 +1,258 @@
+package jetpac.mundo;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import jetpac.app.WorldReader;
+import jetpac.astro.Astronauta;
+import jetpac.astro.Plataforma;
+import jetpac.drag.Fuel;
+import jetpac.drag.Tesouro;
+import jetpac.enemy.AnimacaoInimigo;
+import jetpac.enemy.Inimigo;
+import prof.jogos2D.image.ComponenteVazio;
+import prof.jogos2D.image.ComponenteVisual;
+
+/**
+ * Medição do desempenho de um ciclo do mundo. Constroi mundos sintéticos a
+ * partir de um nível, com o número pretendido de plataformas, inimigos (de
+ * todos os tipos), lasers e arrastáveis, e mede o tempo e a memória alocada
+ * por ciclo do update completo e de cada uma das suas fases.
+ * <p>
+ * Fica numa raiz de código à parte (bench), que não faz parte do jogo. Está
+ * no pacote jetpac.mundo só para poder usar o Mundo.executarFase.
+ * <p>
+ * O mundo é construído uma só vez e o seu estado inicial é guardado com
+ * Mundo.guardarEstado. Cada amostra começa por repor esse estado (fora da
+ * medição) e faz depois um dado número de ciclos seguidos, por isso todas as
+ * amostras partem do mesmo mundo sem o nível ser lido outra vez. Como o mundo
+ * muda durante a amostra (os inimigos morrem, o astronauta pode morrer), é
+ * indicado quantos inimigos restam em média no fim das amostras. O nível base
+ * tem de ter pelo menos um tipo de tesouro.
+ * <p>
+ * Os argumentos são da forma nome=valor, por exemplo
+ * "inimigos=2000 plataformas=300". Os valores por omissão estão em
+ * {@link #main(String[])}.
+ */
+public class MundoBenchmark {
+
+	// distância mínima entre os inimigos criados e o astronauta, para que o
+	// astronauta não morra durante uma amostra
+	private static final int ZONA_SEGURA = 200;
+
+	/**
+	 * As fases do ciclo que podem ser medidas
+	 */
+	private static enum Fase {
+		UPDATE, GERADORES, ELEMENTOS, LASERS
+	}
+
+	private final String nivel; // ficheiro do nível base
+	private final String artDir; // diretório das imagens
+	private final int nPlataformas, nInimigos, nLasers, nArrastaveis;
+	private final long semente;
+
+	private final Mundo mundo; // o mundo medido
+	private final ByteBuffer inicial; // o estado inicial do mundo
+
+	/**
+	 * Cria o benchmark
+	 * 
+	 * @param cfg a configuração, no formato nome=valor
+	 */
+	public MundoBenchmark(HashMap<String, String> cfg) {
+		nivel = cfg.get("nivel");
+		artDir = cfg.get("art");
+		nPlataformas = Integer.parseInt(cfg.get("plataformas"));
+		nInimigos = Integer.parseInt(cfg.get("inimigos"));
+		nLasers = Integer.parseInt(cfg.get("lasers"));
+		nArrastaveis = Integer.parseInt(cfg.get("arrastaveis"));
+		semente = Long.parseLong(cfg.get("semente"));
+
+		mundo = criarMundo();
+		// os inimigos e arrastáveis do benchmark não contam para o máximo do nível
+		inicial = ByteBuffer.allocate(mundo.getTamanhoMaximoEstado() + nInimigos * Inimigo.TAMANHO_ESTADO
+				+ nArrastaveis * (1 + Math.max(Fuel.TAMANHO_ESTADO, Tesouro.TAMANHO_ESTADO)));
+		mundo.guardarEstado(inicial);
+		inicial.flip();
+	}
+
+	/**
+	 * Constroi um mundo sintético a partir do nível base
+	 * 
+	 * @return o mundo, já no estado de jogo
+	 */
+	private Mundo criarMundo() {
+		Random rnd = new Random(semente);
+		Mundo m = new WorldReader(artDir, semente).lerMundo(nivel);
+		int w = m.getWidth(), h = m.getHeight();
+		m.play();
+
+		// plataformas sem imagem, espalhadas pelo mundo
+		for (int i = 0; i < nPlataformas; i++) {
+			Rectangle r = new Rectangle(rnd.nextInt(w), 40 + rnd.nextInt(h - 80), 30 + rnd.nextInt(120), 12);
+			m.addPlatform(new Plataforma(new ComponenteVazio(r)));
+		}
+		m.nivelCarregado();
+
+		// inimigos dos 4 tipos, longe do astronauta
+		Point astro = m.getAstronaut().getPosition();
+		AnimacaoInimigo animacao = m.getEnemyGen().getAnimacao();
+		int tipos[] = { Inimigo.LINEAR, Inimigo.RICOCHETE, Inimigo.PERSEGUIDOR, Inimigo.SALTADOR };
+		for (int i = 0; i < nInimigos; i++) {
+			Point p;
+			do {
+				p = new Point(rnd.nextInt(w), rnd.nextInt(h));
+			} while (p.distance(astro) < ZONA_SEGURA);
+			int dir = rnd.nextBoolean() ? Astronauta.LEFT : Astronauta.RIGHT;
+			m.addEnemy(new Inimigo(tipos[i % tipos.length], p, 4, 10, dir, animacao, m));
+		}
+
+		// lasers em alturas aleatórias (no máximo Mundo.MAX_LASERS)
+		for (int i = 0; i < nLasers; i++) {
+			int alcance = (rnd.nextBoolean() ? 1 : -1) * (150 + rnd.nextInt(550));
+			m.addLaser(rnd.nextInt(w), rnd.nextInt(h), alcance);
+		}
+
+		// arrastáveis a cair, metade fuel e metade tesouros, com as imagens dos
+		// geradores para poderem ser repostos pelo restaurarEstado
+		ComponenteVisual imgTesouro = m.getTreasureGenerator().criarTesouro(0).getImagem();
+		for (int i = 0; i < nArrastaveis; i++) {
+			Point p = new Point(rnd.nextInt(w), rnd.nextInt(h / 2));
+			if (i % 2 == 0)
+				m.addFuel(new Fuel(p, m.getFuelGen().getImg()));
+			else
+				m.addTesouro(new Tesouro(p, 100000, 10, imgTesouro));
+		}
+
+		m.executarFase(Mundo.FASE_INICIO);
+		return m;
+	}
+
+	/**
+	 * executa uma fase do ciclo
+	 */
+	private static void executar(Mundo m, Fase f) {
+		switch (f) {
+			case UPDATE:
+				m.update();
+				break;
+			case GERADORES:
+				m.executarFase(Mundo.FASE_GERADORES);
+				break;
+			case ELEMENTOS:
+				m.executarFase(Mundo.FASE_ELEMENTOS);
+				break;
+			case LASERS:
+				m.executarFase(Mundo.FASE_LASERS);
+				break;
+		}
+	}
+
+	/**
+	 * repõe o estado inicial do mundo
+	 */
+	private void repor() {
+		mundo.restaurarEstado(inicial.duplicate());
+	}
+
+	/**
+	 * Mede uma fase. Cada amostra parte do estado inicial do mundo e faz um
+	 * dado número de ciclos seguidos.
+	 * 
+	 * @param f         a fase a medir
+	 * @param aquecer   número de amostras de aquecimento
+	 * @param amostras  número de amostras medidas
+	 * @param ciclos    ciclos por amostra
+	 */
+	void medir(Fase f, int aquecer, int amostras, int ciclos) {
+		for (int i = 0; i < aquecer; i++) {
+			repor();
+			for (int c = 0; c < ciclos; c++)
+				executar(mundo, f);
+		}
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+		double nsPorCiclo[] = new double[amostras];
+		long bytes = 0;
+		long inimigos = 0;
+		long gcAntes[] = gcInfo();
+		for (int i = 0; i < amostras; i++) {
+			repor();
+			long b0 = threads.getThreadAllocatedBytes(tid);
+			long t0 = System.nanoTime();
+			for (int c = 0; c < ciclos; c++)
+				executar(mundo, f);
+			long t1 = System.nanoTime();
+			bytes += threads.getThreadAllocatedBytes(tid) - b0;
+			nsPorCiclo[i] = (t1 - t0) / (double) ciclos;
+			inimigos += mundo.getNumEnemies();
+		}
+		long gcDepois[] = gcInfo();
+
+		Arrays.sort(nsPorCiclo);
+		double media = 0;
+		for (double v : nsPorCiclo)
+			media += v;
+		media /= amostras;
+		double var = 0;
+		for (double v : nsPorCiclo)
+			var += (v - media) * (v - media);
+		double desvio = Math.sqrt(var / Math.max(1, amostras - 1));
+
+		System.out.printf("%-10s %12.0f ns/ciclo ± %8.0f  p50 %10.0f  p99 %10.0f  %10.0f B/ciclo  gc %d (%d ms)%n", f,
+				media, desvio, nsPorCiclo[amostras / 2], nsPorCiclo[Math.min(amostras - 1, amostras * 99 / 100)],
+				bytes / (double) (amostras * (long) ciclos), gcDepois[0] - gcAntes[0], gcDepois[1] - gcAntes[1]);
+		// o mundo muda durante a amostra, por isso indica-se como acaba
+		System.out.printf("%-10s %12d inimigos no fim de cada amostra (média)%n", "", inimigos / amostras);
+	}
+
+	/**
+	 * retorna o número total de recolhas e o tempo total de GC
+	 */
+	private static long[] gcInfo() {
+		long res[] = new long[2];
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			res[0] += Math.max(0, gc.getCollectionCount());
+			res[1] += Math.max(0, gc.getCollectionTime());
+		}
+		return res;
+	}
+
+	public static void main(String args[]) {
+		HashMap<String, String> cfg = new HashMap<>();
+		cfg.put("nivel", "data/levels/level1.txt");
+		cfg.put("art", "data/art/");
+		cfg.put("plataformas", "100");
+		cfg.put("inimigos", "500");
+		cfg.put("lasers", "50");
+		cfg.put("arrastaveis", "20");
+		cfg.put("semente", "42");
+		cfg.put("aquecer", "20");
+		cfg.put("amostras", "100");
+		cfg.put("ciclos", "100");
+		cfg.put("fases", "UPDATE,GERADORES,ELEMENTOS,LASERS");
+		for (String a : args) {
+			String nv[] = a.split("=", 2);
+			if (!cfg.containsKey(nv[0]) || nv.length < 2)
+				throw new IllegalArgumentException("argumento desconhecido: " + a + ", válidos: " + cfg.keySet());
+			cfg.put(nv[0], nv[1]);
+		}
+		System.out.println("configuração: " + cfg);
+
+		MundoBenchmark b = new MundoBenchmark(cfg);
+		int aquecer = Integer.parseInt(cfg.get("aquecer"));
+		int amostras = Integer.parseInt(cfg.get("amostras"));
+		int ciclos = Integer.parseInt(cfg.get("ciclos"));
+		for (String f : cfg.get("fases").split(","))
+			b.medir(Fase.valueOf(f.trim().toUpperCase()), aquecer, amostras, ciclos);
+	}
+}
@@ -0,0 +1,52 @@
+package jetpac.drag;
+
+import java.nio.ByteBuffer;
+
+import jetpac.mundo.Entidade;
+
+/**
+ * Esta interface define os elementos que o astronauta pode apanhar e arrastar
+ * até à nave.
+ */
+public interface Arrastavel extends Entidade {
+
+	/**
+	 * indica se o elemento está a cair
+	 * 
+	 * @return true, se está a cair
+	 */
+	public boolean isFalling();
+
+	/**
+	 * indica se o elemento pode ser apanhado
+	 * 
+	 * @return true, se pode ser apanhado
+	 */
+	public boolean isDraggable();
+
+	/**
+	 * o astronauta larga o elemento
+	 */
+	public void release();
+
+	/**
+	 * indica se o elemento está a ser arrastado pelo astronauta
+	 * 
+	 * @return true, se está a ser arrastado
+	 */
+	public boolean isDragged();
+
+	/**
+	 * guarda o estado do elemento (ver Mundo.guardarEstado)
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b);
+
+	/**
+	 * repõe o estado guardado com guardarEstado
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b);
+}
@@ -3,18 +3,19 @@ package jetpac.drag;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 import jetpac.astro.Astronauta;
 import jetpac.astro.Plataforma;
 import jetpac.mundo.Mundo;
 import prof.jogos2D.image.ComponenteVisual;
-import prof.jogos2D.util.Vector2D;
 
 /**
  * Classe que representa as partes da nave. Cada parte tem uma ordem em que deve
  * ser colocada na nave
  */
-public class SpaceshipPart {
+public class SpaceshipPart implements Arrastavel {
 
 	private int partIdx; // ordem da parte da nave
 
@@ -25,11 +26,15 @@ public class SpaceshipPart {
 		FALLING, REST, DRAGGED, DROPING, DELIVERED
 	}
 
+	private static final State ESTADOS[] = State.values();
+
 	private State estado = State.FALLING;
 	private Mundo world;
 	private ComponenteVisual imagem;
 	private int offsetX, offsetY; // offset da posição do astronauta quando a ser arrastado
 	private int nextDrag = 0;
+	private Plataforma.Toque toque = new Plataforma.Toque(); // resultado dos toques nas plataformas
+	private ArrayList<Plataforma> plataformas = new ArrayList<>(); // plataformas por perto
 
 	/**
 	 * Cria uma parte da nave
@@ -48,7 +53,7 @@ public class SpaceshipPart {
 		imagem.desenhar(g);
 	}
 
-	private Rectangle getBounds() {
+	public Rectangle getBounds() {
 		return imagem.getBounds();
 	}
 
@@ -65,6 +70,30 @@ public class SpaceshipPart {
 		return estado == State.FALLING;
 	}
 
+	public boolean isDragged() {
+		return estado == State.DRAGGED;
+	}
+
+	// número de bytes escritos por guardarEstado
+	public static final int TAMANHO_ESTADO = 21;
+
+	public void guardarEstado(ByteBuffer b) {
+		b.put((byte) estado.ordinal());
+		b.putInt(imagem.getPosicao().x);
+		b.putInt(imagem.getPosicao().y);
+		b.putInt(offsetX);
+		b.putInt(offsetY);
+		b.putInt(nextDrag);
+	}
+
+	public void restaurarEstado(ByteBuffer b) {
+		estado = ESTADOS[b.get()];
+		imagem.setPosicao(new Point(b.getInt(), b.getInt()));
+		offsetX = b.getInt();
+		offsetY = b.getInt();
+		nextDrag = b.getInt();
+	}
+
 	private void move(int dx, int dy) {
 		imagem.getPosicao().translate(dx, dy);
 	}
@@ -123,11 +152,13 @@ public class SpaceshipPart {
 
 	private void updateFall() {
 		move(0, 2);
-		for (Plataforma p : getWorld().getPlatforms()) {
-			Vector2D toqueV = p.hitV(getBounds());
+		// os limites só mudam quando bate, por isso calculam-se uma só vez
+		Rectangle limites = getBounds();
+		for (Plataforma p : getWorld().getPlatformsIn(limites, plataformas)) {
 			// se bateu em algum lado pára
-			if (toqueV.x != 0 || toqueV.y != 0) {
-				move((int) toqueV.x, (int) toqueV.y);
+			if (p.toque(limites, toque)) {
+				move(toque.getDx(), toque.getDy());
+				limites.translate(toque.getDx(), toque.getDy());
 				estado = State.REST;
 			}
 		}
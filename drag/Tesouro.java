@@ -3,13 +3,13 @@ package jetpac.drag;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 import jetpac.astro.Astronauta;
 import jetpac.astro.Plataforma;
 import jetpac.mundo.Mundo;
 import prof.jogos2D.image.ComponenteVisual;
-import prof.jogos2D.util.ReguladorVelocidade;
-import prof.jogos2D.util.Vector2D;
 
 /**
  * classe que prepresenta um tesouro que aparece no mundo. Os tesouros aumentam
@@ -17,7 +17,7 @@ import prof.jogos2D.util.Vector2D;
  * tempo
  * 
  */
-public class Tesouro {
+public class Tesouro implements Arrastavel {
 
 	private long lifeTime; // tempo de vida
 	private int score; // pontuação
@@ -30,11 +30,15 @@ public class Tesouro {
 		FALLING, REST, DRAGGED, DROPING, DELIVERED
 	}
 
+	private static final State ESTADOS[] = State.values();
+
 	private State estado = State.FALLING;
 	private Mundo world;
 	private ComponenteVisual imagem;
 	private int offsetX, offsetY; // offset da posição do astronauta quando a ser arrastado
 	private int nextDrag = 0;
+	private Plataforma.Toque toque = new Plataforma.Toque(); // resultado dos toques nas plataformas
+	private ArrayList<Plataforma> plataformas = new ArrayList<>(); // plataformas por perto
 
 	/**
 	 * Cria um tesouro
@@ -47,8 +51,8 @@ public class Tesouro {
 	public Tesouro(Point p, int lifeTime, int score, ComponenteVisual img) {
 		this.imagem = img;
 		imagem.setPosicao(p);
+		// o fim da vida só se sabe quando estiver num mundo
 		this.lifeLeft = lifeTime;
-		this.lifeTime = ReguladorVelocidade.tempoRelativo() + lifeTime;
 		this.score = score;
 	}
 
@@ -56,7 +60,7 @@ public class Tesouro {
 		imagem.desenhar(g);
 	}
 
-	private Rectangle getBounds() {
+	public Rectangle getBounds() {
 		return imagem.getBounds();
 	}
 
@@ -72,6 +76,35 @@ public class Tesouro {
 		return estado == State.FALLING;
 	}
 
+	public boolean isDragged() {
+		return estado == State.DRAGGED;
+	}
+
+	// número de bytes escritos por guardarEstado
+	public static final int TAMANHO_ESTADO = 37;
+
+	public void guardarEstado(ByteBuffer b) {
+		b.put((byte) estado.ordinal());
+		b.putInt(imagem.getPosicao().x);
+		b.putInt(imagem.getPosicao().y);
+		b.putInt(offsetX);
+		b.putInt(offsetY);
+		b.putInt(nextDrag);
+		b.putLong(lifeTime);
+		b.putLong(lifeLeft);
+	}
+
+	public void restaurarEstado(ByteBuffer b) {
+		// o estado é reposto diretamente, sem os efeitos de setEstado
+		estado = ESTADOS[b.get()];
+		imagem.setPosicao(new Point(b.getInt(), b.getInt()));
+		offsetX = b.getInt();
+		offsetY = b.getInt();
+		nextDrag = b.getInt();
+		lifeTime = b.getLong();
+		lifeLeft = b.getLong();
+	}
+
 	private void move(int dx, int dy) {
 		imagem.getPosicao().translate(dx, dy);
 	}
@@ -83,6 +116,7 @@ public class Tesouro {
 
 	public void setWorld(Mundo w) {
 		world = w;
+		lifeTime = w.getTempo() + lifeLeft;
 	}
 
 	public Mundo getWorld() {
@@ -92,7 +126,7 @@ public class Tesouro {
 	public void update() {
 		// ver se já passou o tempo de validade
 		if (getEstado() != State.DRAGGED && getEstado() != State.DROPING) {
-			if (lifeTime < ReguladorVelocidade.tempoRelativo()) {
+			if (lifeTime < world.getTempo()) {
 				lifeLeft = 0;
 				getWorld().getTreasureGenerator().treasureRemoved();
 			}
@@ -137,10 +171,12 @@ public class Tesouro {
 
 	private void updateFall() {
 		move(0, 2);
-		for (Plataforma p : getWorld().getPlatforms()) {
-			Vector2D toqueV = p.hitV(getBounds());
-			if (toqueV.x != 0 || toqueV.y != 0) {
-				move((int) toqueV.x, (int) toqueV.y);
+		// os limites só mudam quando bate, por isso calculam-se uma só vez
+		Rectangle limites = getBounds();
+		for (Plataforma p : getWorld().getPlatformsIn(limites, plataformas)) {
+			if (p.toque(limites, toque)) {
+				move(toque.getDx(), toque.getDy());
+				limites.translate(toque.getDx(), toque.getDy());
 				estado = State.REST;
 			}
 		}
@@ -180,9 +216,9 @@ public class Tesouro {
 	private void setEstado(State estado) {
 		this.estado = estado;
 		if (estado == State.DRAGGED) {
-			lifeLeft = lifeTime - ReguladorVelocidade.tempoRelativo();
+			lifeLeft = lifeTime - world.getTempo();
 		} else {
-			lifeTime = lifeLeft + ReguladorVelocidade.tempoRelativo();
+			lifeTime = lifeLeft + world.getTempo();
 		}
 	}
 
@@ -0,0 +1,92 @@
+package jetpac.enemy;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+
+import prof.jogos2D.image.ComponenteMultiAnimado;
+
+/**
+ * As animações de um tipo de inimigo, partilhadas por todos os inimigos desse
+ * tipo. Cada inimigo guarda só em que animação e frame está e é desenhado
+ * pondo a imagem partilhada nessa animação, frame e posição. A imagem só é
+ * mexida no desenho, que é feito pela mesma thread que atualiza o mundo, por
+ * isso pode ser partilhada por todos os inimigos do mundo.
+ */
+public final class AnimacaoInimigo {
+
+	private final ComponenteMultiAnimado imagem; // as frames de todas as animações
+	private final int nFrames; // número de frames de cada animação
+	private final int delay; // ciclos que dura cada frame
+	private final int comprimento, altura; // dimensões de cada frame
+
+	// posição reutilizada no desenho
+	private final Point posicao = new Point();
+
+	/**
+	 * Cria as animações de um tipo de inimigo
+	 * 
+	 * @param imagem  a imagem com as animações
+	 * @param nFrames número de frames de cada animação
+	 * @param delay   ciclos que dura cada frame
+	 */
+	public AnimacaoInimigo(ComponenteMultiAnimado imagem, int nFrames, int delay) {
+		this.imagem = imagem;
+		this.nFrames = Math.max(1, nFrames);
+		this.delay = Math.max(1, delay);
+		comprimento = imagem.getComprimento();
+		altura = imagem.getAltura();
+	}
+
+	/**
+	 * desenha uma frame numa dada posição
+	 * 
+	 * @param g     onde desenhar
+	 * @param x     coordenada x
+	 * @param y     coordenada y
+	 * @param anim  a animação
+	 * @param frame a frame da animação
+	 */
+	void desenhar(Graphics2D g, int x, int y, int anim, int frame) {
+		posicao.setLocation(x, y);
+		imagem.setPosicao(posicao);
+		imagem.setAnim(anim);
+		imagem.setFrameNum(frame);
+		imagem.desenhar(g);
+	}
+
+	/**
+	 * retorna o número de frames de cada animação
+	 * 
+	 * @return o número de frames de cada animação
+	 */
+	public int getNumFrames() {
+		return nFrames;
+	}
+
+	/**
+	 * retorna o número de ciclos que dura cada frame
+	 * 
+	 * @return o número de ciclos de cada frame
+	 */
+	public int getDelay() {
+		return delay;
+	}
+
+	/**
+	 * retorna o comprimento de cada frame
+	 * 
+	 * @return o comprimento de cada frame
+	 */
+	public int getComprimento() {
+		return comprimento;
+	}
+
+	/**
+	 * retorna a altura de cada frame
+	 * 
+	 * @return a altura de cada frame
+	 */
+	public int getAltura() {
+		return altura;
+	}
+}
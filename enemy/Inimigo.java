@@ -3,19 +3,19 @@ package jetpac.enemy;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.util.concurrent.ThreadLocalRandom;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
-import prof.jogos2D.image.ComponenteMultiAnimado;
-import prof.jogos2D.util.ReguladorVelocidade;
-import prof.jogos2D.util.Vector2D;
 import jetpac.astro.Astronauta;
 import jetpac.astro.Plataforma;
+import jetpac.mundo.Aleatorio;
+import jetpac.mundo.Entidade;
 import jetpac.mundo.Mundo;
 
 /**
  * classe que representa um inimigo
  */
-public class Inimigo {
+public class Inimigo implements Entidade {
 
 	// constantes para identificar as animações
 	private static final int ANIM_LEFT = 0;
@@ -27,7 +27,19 @@ public class Inimigo {
 	private int score; // pontuação do inimigo
 
 	private Mundo world;
-	private ComponenteMultiAnimado imagem;
+
+	// as animações são partilhadas por todos os inimigos do tipo; cada inimigo
+	// tem só a posição e o cursor da animação
+	private AnimacaoInimigo animacao;
+	private int x, y; // posição do inimigo
+	private byte anim; // a animação atual
+	private short frame; // a frame atual
+	private short espera; // ciclos já passados na frame atual
+	private int ciclos; // número de vezes que a animação chegou ao fim
+	private boolean ciclico = true; // se a animação recomeça quando chega ao fim
+	private final Rectangle bounds = new Rectangle(); // reutilizado em getBounds
+
+	private boolean livre; // se está no gerador, à espera de ser reutilizado
 
 	// constantes para identificar o tipo de inimigo
 	public static final int LINEAR = 0;
@@ -42,43 +54,88 @@ public class Inimigo {
 	private int amplitude; // se for um saltador, afeta a altura do salto
 	private float fase, mudaFase; // se for um saltador indica em que fase do salto está
 
+	// resultado dos testes de toque nas plataformas
+	private Plataforma.Toque toque = new Plataforma.Toque();
+	private ArrayList<Plataforma> plataformas = new ArrayList<>(); // plataformas por perto
+
 	/**
 	 * cria um inimigo
 	 * 
-	 * @param p     posição inicial
+	 * @param tipo     o tipo de inimigo (LINEAR, RICOCHETE, PERSEGUIDOR ou
+	 *                 SALTADOR)
+	 * @param p        posição inicial
+	 * @param vel      velocidade inicial
+	 * @param score    pontuação
+	 * @param dir      direção en que está virado
+	 * @param animacao as animações do tipo de inimigo
+	 * @param mundo    mundo onde o inimigo vai estar
+	 */
+	public Inimigo(int tipo, Point p, int vel, int score, int dir, AnimacaoInimigo animacao, Mundo mundo) {
+		this(animacao, mundo);
+		reiniciar(tipo, p.x, p.y, vel, score, dir);
+	}
+
+	/**
+	 * cria um inimigo ainda por preparar, que tem de ser preparado com
+	 * reiniciar ou restaurarEstado antes de ser usado. Não usa números
+	 * aleatórios, por isso pode ser criado antes de ser preciso.
+	 * 
+	 * @param animacao as animações do tipo de inimigo
+	 * @param mundo    mundo onde o inimigo vai estar
+	 */
+	public Inimigo(AnimacaoInimigo animacao, Mundo mundo) {
+		this.animacao = animacao;
+		world = mundo;
+	}
+
+	/**
+	 * prepara o inimigo como se tivesse acabado de ser criado, para o mesmo
+	 * objeto poder ser usado por vários inimigos
+	 * 
+	 * @param tipo  o tipo de inimigo
+	 * @param x     coordenada x inicial
+	 * @param y     coordenada y inicial
 	 * @param vel   velocidade inicial
 	 * @param score pontuação
 	 * @param dir   direção en que está virado
-	 * @param img   imagems
 	 */
-	public Inimigo(int tipo, Point p, int vel, int score, int dir, ComponenteMultiAnimado img) {
+	public void reiniciar(int tipo, int x, int y, int vel, int score, int dir) {
 		this.tipo = tipo;
+		Aleatorio aleatorio = world.getAleatorio();
+		dead = false;
 
-		imagem = (ComponenteMultiAnimado) img.clone();
-
-		// ver qual animação a usar
+		// ver qual animação a usar, que começa do início
 		if (dir == Astronauta.LEFT) {
-			imagem.setAnim(ANIM_LEFT);
+			anim = ANIM_LEFT;
 			velX = -vel;
 		} else {
-			imagem.setAnim(ANIM_RIGHT);
+			anim = ANIM_RIGHT;
 			velX = vel;
 		}
-		imagem.setPosicao(p);
+		frame = 0;
+		espera = 0;
+		ciclos = 0;
+		ciclico = true;
+		this.x = x;
+		this.y = y;
 		this.score = score;
 
+		velY = 0;
+		changeCycle = 0;
+		amplitude = 0;
+		fase = mudaFase = 0;
 		if (tipo == LINEAR || tipo == RICOCHETE) {
 			// a velocidade em Y é aleatória
-			velY = vel / 2 - ThreadLocalRandom.current().nextInt(vel);
+			velY = vel / 2 - aleatorio.nextInt(vel);
 		} else if (tipo == PERSEGUIDOR) {
 			// a velocidade em Y é aleatória
-			velY = vel / 2 - ThreadLocalRandom.current().nextInt(vel);
+			velY = vel / 2 - aleatorio.nextInt(vel);
 			changeCycle = proximaMudanca();
 		} else if (tipo == SALTADOR) {
 			velX = velX / 2;
-			amplitude = ThreadLocalRandom.current().nextInt(6, 9);
-			fase = ThreadLocalRandom.current().nextInt(180);
-			mudaFase = ThreadLocalRandom.current().nextFloat(0.3f, 0.7f);
+			amplitude = aleatorio.nextInt(6, 9);
+			fase = aleatorio.nextInt(180);
+			mudaFase = aleatorio.nextFloat(0.3f, 0.7f);
 		}
 	}
 
@@ -86,6 +143,9 @@ public class Inimigo {
 	 * atualiza o inimigo updates the enemy
 	 */
 	public void update() {
+		// a animação avança mesmo durante a morte
+		animar();
+
 		// se está morto não faz nada
 		if (dead)
 			return;
@@ -104,18 +164,51 @@ public class Inimigo {
 	}
 
 	public void draw(Graphics2D g) {
-		getImagem().desenhar(g);
+		animacao.desenhar(g, x, y, anim, frame);
 	}
 
-	public ComponenteMultiAnimado getImagem() {
-		return imagem;
+	/**
+	 * avança a animação um ciclo. Uma animação que não é cíclica fica na
+	 * última frame, mas continua a contar os ciclos.
+	 */
+	private void animar() {
+		if (++espera < animacao.getDelay())
+			return;
+		espera = 0;
+		if (frame + 1 < animacao.getNumFrames())
+			frame++;
+		else {
+			ciclos++;
+			if (ciclico)
+				frame = 0;
+		}
+	}
+
+	/**
+	 * retorna o rectângulo ocupado pelo inimigo. O rectângulo é reutilizado,
+	 * por isso só é válido até à próxima chamada.
+	 * 
+	 * @return o rectângulo ocupado pelo inimigo
+	 */
+	public Rectangle getBounds() {
+		bounds.setBounds(x, y, animacao.getComprimento(), animacao.getAltura());
+		return bounds;
+	}
+
+	/**
+	 * retorna as animações do inimigo
+	 * 
+	 * @return as animações do inimigo
+	 */
+	public AnimacaoInimigo getAnimacao() {
+		return animacao;
 	}
 
 	// ver se bate no astronauta
 	// check if it hits the astronaut
 	protected void checkAstronauta() {
 		Rectangle ra = getWorld().getAstronaut().getBounds();
-		if (ra.intersects(getImagem().getBounds())) {
+		if (ra.intersects(getBounds())) {
 			die();
 			getWorld().getAstronaut().die();
 		}
@@ -124,16 +217,24 @@ public class Inimigo {
 	protected void checkPlataformas() {
 		// ver se bate nas plataformas
 		// check if it hits a platform
-		for (Plataforma f : getWorld().getPlatforms()) {
-			Vector2D toque = f.hitV(getImagem().getBounds());
-			if (toque.x == 0 && toque.y < 0)
-				hitsPlatformTop(f);
-			else if (toque.x == 0 && toque.y > 0)
-				hitsPlatformBottom(f);
-			if (toque.x < 0 && toque.y == 0)
-				hitsPlatformLeft(f);
-			if (toque.x > 0 && toque.y == 0)
-				hitsPlatformRight(f);
+		for (Plataforma f : getWorld().getPlatformsIn(getBounds(), plataformas)) {
+			f.toque(getBounds(), toque);
+			switch (toque.getLocal()) {
+				case TOP:
+					hitsPlatformTop(f);
+					break;
+				case BOTTOM:
+					hitsPlatformBottom(f);
+					break;
+				case LEFT:
+					hitsPlatformLeft(f);
+					break;
+				case RIGHT:
+					hitsPlatformRight(f);
+					break;
+				case NONE:
+					break;
+			}
 		}
 	}
 
@@ -203,18 +304,18 @@ public class Inimigo {
 		if (tipo == LINEAR || tipo == RICOCHETE)
 			move(velX, velY);
 		else if (tipo == PERSEGUIDOR) {
-			if (ReguladorVelocidade.tempoRelativo() < changeCycle) {
+			if (world.getTempo() < changeCycle) {
 				move(velX, velY);
 				return;
 			}
 
 			// está na altura de mudar de direção
 			Astronauta astro = getWorld().getAstronaut();
-			if (getImagem().getPosicao().x < astro.getPosition().x)
+			if (x < astro.getPosition().x)
 				setVelX(Math.abs(getVelX()));
 			else
 				setVelX(-Math.abs(getVelX()));
-			if (getImagem().getPosicao().y < astro.getPosition().y)
+			if (y < astro.getPosition().y)
 				setVelY(Math.abs(getVelX() / 2));
 			else
 				setVelY(-Math.abs(getVelX() / 2));
@@ -235,7 +336,17 @@ public class Inimigo {
 	 * @return true, se está morto
 	 */
 	public boolean isDead() {
-		return dead && getImagem().numCiclosFeitos() > 1;
+		return dead && ciclos > 1;
+	}
+
+	/**
+	 * indica se o inimigo ainda está ativo, isto é, se ainda não acabou a
+	 * animação de morte
+	 * 
+	 * @return true, se ainda está ativo
+	 */
+	public boolean isActive() {
+		return !isDead();
 	}
 
 	/**
@@ -247,6 +358,25 @@ public class Inimigo {
 		return dead;
 	}
 
+	/**
+	 * indica se o inimigo está no gerador, à espera de ser reutilizado (ver
+	 * EnemyGenerator.devolver)
+	 * 
+	 * @return true se estiver à espera de ser reutilizado
+	 */
+	public boolean isLivre() {
+		return livre;
+	}
+
+	/**
+	 * define se o inimigo está no gerador, à espera de ser reutilizado
+	 * 
+	 * @param livre true se estiver à espera de ser reutilizado
+	 */
+	public void setLivre(boolean livre) {
+		this.livre = livre;
+	}
+
 	/**
 	 * desloca o inimigo
 	 * 
@@ -254,16 +384,13 @@ public class Inimigo {
 	 * @param dy distância a mover em y
 	 */
 	public void move(int dx, int dy) {
-		ComponenteMultiAnimado img = getImagem();
-
-		int y = img.getPosicao().y;
-
 		// se chegar a uma das extremidades passa para a outra
-		if (img.getPosicao().x < 0 && dx < 0)
-			img.setPosicao(new Point(getWorld().getWidth(), y));
-		else if (img.getPosicao().x > getWorld().getWidth() && dx > 0)
-			img.setPosicao(new Point(-img.getComprimento(), y));
-		getImagem().getPosicao().translate(dx, dy);
+		if (x < 0 && dx < 0)
+			x = getWorld().getWidth();
+		else if (x > getWorld().getWidth() && dx > 0)
+			x = -animacao.getComprimento();
+		x += dx;
+		y += dy;
 	}
 
 	/**
@@ -275,10 +402,62 @@ public class Inimigo {
 		dead = true;
 
 		// passar para a animação de morte
-		ComponenteMultiAnimado img = getImagem();
-		img.setAnim(ANIM_DIE);
-		img.setFrameNum(0);
-		img.setCiclico(false);
+		anim = ANIM_DIE;
+		frame = 0;
+		espera = 0;
+		ciclos = 0;
+		ciclico = false;
+	}
+
+	// número de bytes escritos por guardarEstado
+	public static final int TAMANHO_ESTADO = 51;
+
+	/**
+	 * guarda o estado do inimigo (ver Mundo.guardarEstado)
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.put((byte) tipo);
+		b.putInt(x);
+		b.putInt(y);
+		b.putInt(velX);
+		b.putInt(velY);
+		b.putInt(score);
+		b.put((byte) (dead ? 1 : 0));
+		b.putLong(changeCycle);
+		b.putInt(amplitude);
+		b.putFloat(fase);
+		b.putFloat(mudaFase);
+		b.put(anim);
+		b.putShort(frame);
+		b.putShort(espera);
+		b.putInt(ciclos);
+	}
+
+	/**
+	 * repõe o estado guardado com guardarEstado, incluindo o tipo
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b) {
+		tipo = b.get();
+		x = b.getInt();
+		y = b.getInt();
+		velX = b.getInt();
+		velY = b.getInt();
+		score = b.getInt();
+		dead = b.get() != 0;
+		changeCycle = b.getLong();
+		amplitude = b.getInt();
+		fase = b.getFloat();
+		mudaFase = b.getFloat();
+		// a animação de morte não é cíclica
+		anim = b.get();
+		frame = b.getShort();
+		espera = b.getShort();
+		ciclos = b.getInt();
+		ciclico = !dead;
 	}
 
 	/**
@@ -297,9 +476,9 @@ public class Inimigo {
 	public void setVelX(int velX) {
 		// ver se mudou de direção
 		if (velX > 0 && this.velX < 0)
-			imagem.setAnim(ANIM_RIGHT);
+			anim = ANIM_RIGHT;
 		else if (velX < 0 && this.velX > 0)
-			imagem.setAnim(ANIM_LEFT);
+			anim = ANIM_LEFT;
 		this.velX = velX;
 	}
 
@@ -318,6 +497,6 @@ public class Inimigo {
 	 * @return o tempo da próxima mudança de movimento
 	 */
 	private long proximaMudanca() {
-		return ReguladorVelocidade.tempoRelativo() + 3000 + ThreadLocalRandom.current().nextInt(5000);
+		return world.getTempo() + 3000 + world.getAleatorio().nextInt(5000);
 	}
 }
@@ -1,13 +1,11 @@
 package jetpac.generator;
 
-import java.awt.Point;
-import java.util.concurrent.ThreadLocalRandom;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 import jetpac.astro.Astronauta;
 import jetpac.enemy.*;
 import jetpac.mundo.Mundo;
-import prof.jogos2D.image.ComponenteMultiAnimado;
-import prof.jogos2D.util.ReguladorVelocidade;
 
 /**
  * Esta classe é responsável por gerar os inimigos de cada nível.
@@ -17,14 +15,17 @@ public class EnemyGenerator {
 
 	private static final int creationCicle = 800; // o ciclo de criação é de 800 milisegundos
 
-	private String type; // o tipo de inimigo a criar
+	private int type; // o tipo de inimigo a criar (Inimigo.LINEAR, ...)
 	private int maxEnemys; // número máximo de inimigos que podem existir simultaneamente
 	private int enemyVel; // a velocidade de cada inimigo
-	private ComponenteMultiAnimado img; // a imagem que representa o inimigo
+	private AnimacaoInimigo animacao; // as animações partilhadas pelos inimigos
 	private Mundo world; // o mundo ao qual serão adicionados os inimigos
 	private long nextCreation; // indica quando se voltam a criar inimigos
 	private int enemyScore; // a pontuação de cada inimigo
 
+	// inimigos que já saíram do mundo e podem ser reutilizados
+	private ArrayList<Inimigo> livres;
+
 	/**
 	 * Cria um gerador de inimigos
 	 * 
@@ -32,18 +33,111 @@ public class EnemyGenerator {
 	 * @param maxEnemys  número máximo de inimigos simultâneos
 	 * @param enemyVel   velocidade dos inimigos
 	 * @param enemyScore pontuação de cada inimigos
-	 * @param img        imagem do inimigo
+	 * @param animacao   animações dos inimigos
 	 * @param world      mundo onde colocar os inimigos
 	 */
-	public EnemyGenerator(String type, int maxEnemys, int enemyVel, int enemyScore, ComponenteMultiAnimado img,
+	public EnemyGenerator(String type, int maxEnemys, int enemyVel, int enemyScore, AnimacaoInimigo animacao,
 			Mundo world) {
 		this.maxEnemys = maxEnemys;
 		this.enemyVel = enemyVel;
-		this.img = img;
+		this.animacao = animacao;
 		this.world = world;
 		this.enemyScore = enemyScore;
-		this.type = type;
-		nextCreation = creationCicle + ReguladorVelocidade.tempoRelativo();
+		nextCreation = creationCicle + world.getTempo();
+
+		// verificar qual o tipo de inimigo a criar
+		if (type.equals("ricochete"))
+			this.type = Inimigo.RICOCHETE;
+		else if (type.equals("perseguidor"))
+			this.type = Inimigo.PERSEGUIDOR;
+		else if (type.equals("saltador"))
+			this.type = Inimigo.SALTADOR;
+		else // por defeito assume que é linear
+			this.type = Inimigo.LINEAR;
+
+		// criar já todos os inimigos que podem existir ao mesmo tempo
+		livres = new ArrayList<>(maxEnemys);
+		for (int i = 0; i < maxEnemys; i++) {
+			Inimigo e = new Inimigo(animacao, world);
+			e.setLivre(true);
+			livres.add(e);
+		}
+	}
+
+	/**
+	 * retorna um inimigo por preparar (ver Inimigo.reiniciar), reutilizando
+	 * um que já tenha saído do mundo, se houver
+	 * 
+	 * @return um inimigo por preparar
+	 */
+	public Inimigo obter() {
+		if (livres.isEmpty())
+			return new Inimigo(animacao, world);
+		Inimigo e = livres.remove(livres.size() - 1);
+		e.setLivre(false);
+		return e;
+	}
+
+	/**
+	 * devolve um inimigo que saiu do mundo, para ser reutilizado. Devolver
+	 * outra vez um inimigo que já foi devolvido não tem efeito, senão o mesmo
+	 * objeto podia ser usado por dois inimigos.
+	 * 
+	 * @param e o inimigo que saiu do mundo
+	 */
+	public void devolver(Inimigo e) {
+		if (e.isLivre())
+			return;
+		e.setLivre(true);
+		livres.add(e);
+	}
+
+	/**
+	 * retorna o número de inimigos prontos a ser reutilizados
+	 * 
+	 * @return o número de inimigos livres
+	 */
+	public int getNumLivres() {
+		return livres.size();
+	}
+
+	/**
+	 * retorna o número máximo de inimigos que podem existir ao mesmo tempo
+	 * 
+	 * @return o número máximo de inimigos simultâneos
+	 */
+	public int getMaxEnemys() {
+		return maxEnemys;
+	}
+
+	/**
+	 * retorna as animações partilhadas pelos inimigos
+	 * 
+	 * @return as animações dos inimigos
+	 */
+	public AnimacaoInimigo getAnimacao() {
+		return animacao;
+	}
+
+	// número de bytes escritos por guardarEstado
+	public static final int TAMANHO_ESTADO = 8;
+
+	/**
+	 * guarda o estado do gerador (ver Mundo.guardarEstado)
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.putLong(nextCreation);
+	}
+
+	/**
+	 * repõe o estado guardado com guardarEstado
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b) {
+		nextCreation = b.getLong();
 	}
 
 	/**
@@ -55,41 +149,30 @@ public class EnemyGenerator {
 			return;
 
 		// verificar se já é tempo de os criar
-		if (nextCreation <= ReguladorVelocidade.tempoRelativo()) {
+		if (nextCreation <= world.getTempo()) {
 			// criar sempre metade dos inimigos mais 1, para não criar todos de uma vez
 			for (int i = 0; i <= (maxEnemys - world.getNumEnemies()) / 2; i++) {
 				// escolher aleatoriamente a coordenada y onde vai aparecer o inimigo
-				int y = ThreadLocalRandom.current().nextInt(world.getHeight() - 2 * img.getAltura());
+				int y = world.getAleatorio().nextInt(world.getHeight() - 2 * animacao.getAltura());
 
 				// escolher se aparece do lado esquerdo ou direito (1= direito, 0 = esquerdo)
-				int r = ThreadLocalRandom.current().nextInt(2);
-				int dir;
-				Point pos;
+				int r = world.getAleatorio().nextInt(2);
+				int dir, x;
 				if (r == 0) {
 					dir = Astronauta.RIGHT; // move-se para a direita
-					pos = new Point(5 - img.getComprimento(), y); // aparece do lado esquerdo
+					x = 5 - animacao.getComprimento(); // aparece do lado esquerdo
 				} else {
 					dir = Astronauta.LEFT;
-					pos = new Point(world.getWidth() - 5, y);
+					x = world.getWidth() - 5;
 				}
 
-				// verificar qual o tipo de inimigo a criar
-				Inimigo e;
-				if (type.equals("linear"))
-					e = new Inimigo(Inimigo.LINEAR, pos, enemyVel, enemyScore, dir, img);
-				else if (type.equals("ricochete"))
-					e = new Inimigo(Inimigo.RICOCHETE, pos, enemyVel, enemyScore, dir, img);
-				else if (type.equals("perseguidor"))
-					e = new Inimigo(Inimigo.PERSEGUIDOR, pos, enemyVel, enemyScore, dir, img);
-				else if (type.equals("saltador"))
-					e = new Inimigo(Inimigo.SALTADOR, pos, enemyVel, enemyScore, dir, img);
-				else // por defeito assume que é linear
-					e = new Inimigo(Inimigo.LINEAR, pos, enemyVel, enemyScore, dir, img);
-				// adicionar o inimigo ao mundo
+				// reutilizar um inimigo livre e adicioná-lo ao mundo
+				Inimigo e = obter();
+				e.reiniciar(type, x, y, enemyVel, enemyScore, dir);
 				world.addEnemy(e);
 
 				// reiniciar o contador de criação
-				nextCreation = creationCicle + ReguladorVelocidade.tempoRelativo();
+				nextCreation = creationCicle + world.getTempo();
 			}
 		}
 	}
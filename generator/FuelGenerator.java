@@ -1,10 +1,9 @@
 package jetpac.generator;
 
 import java.awt.Point;
-import java.util.concurrent.ThreadLocalRandom;
+import java.nio.ByteBuffer;
 
 import prof.jogos2D.image.ComponenteVisual;
-import prof.jogos2D.util.ReguladorVelocidade;
 import jetpac.drag.Fuel;
 import jetpac.mundo.Mundo;
 
@@ -45,6 +44,40 @@ public class FuelGenerator {
 		proxFuel = nextFuelTime();
 	}
 
+	/**
+	 * retorna a imagem usada para os fuels
+	 * 
+	 * @return a imagem dos fuels
+	 */
+	public ComponenteVisual getImg() {
+		return img;
+	}
+
+	// número de bytes escritos por guardarEstado
+	public static final int TAMANHO_ESTADO = 13;
+
+	/**
+	 * guarda o estado do gerador (ver Mundo.guardarEstado)
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.putInt(nFuels);
+		b.putLong(proxFuel);
+		b.put((byte) (foiEntregue ? 1 : 0));
+	}
+
+	/**
+	 * repõe o estado guardado com guardarEstado
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b) {
+		nFuels = b.getInt();
+		proxFuel = b.getLong();
+		foiEntregue = b.get() != 0;
+	}
+
 	/**
 	 * método qua cria os fuels quando for caso disso
 	 */
@@ -54,10 +87,10 @@ public class FuelGenerator {
 			return;
 
 		// quando o temporizador chega a zero é altura de criar fuel
-		if (proxFuel <= ReguladorVelocidade.tempoRelativo()) {
+		if (proxFuel <= world.getTempo()) {
 			// gerar aleatoriamente a coordenada x onde aparece o fuel
 			int x = img.getComprimento()
-					+ ThreadLocalRandom.current().nextInt(world.getWidth() - 2 * img.getComprimento());
+					+ world.getAleatorio().nextInt(world.getWidth() - 2 * img.getComprimento());
 
 			// criar e adicionar o fuel ao mundo
 			Fuel f = new Fuel(new Point(x, 0), img);
@@ -85,7 +118,7 @@ public class FuelGenerator {
 	 * @return o número de ciclos até crir o próximo
 	 */
 	private long nextFuelTime() {
-		return minTime + ReguladorVelocidade.tempoRelativo() + ThreadLocalRandom.current().nextInt(range);
+		return minTime + world.getTempo() + world.getAleatorio().nextInt(range);
 	}
 
 	/**
@@ -2,10 +2,9 @@ package jetpac.generator;
 
 import jetpac.drag.Tesouro;
 import jetpac.mundo.Mundo;
-import prof.jogos2D.util.ReguladorVelocidade;
 
 import java.awt.Point;
-import java.util.concurrent.ThreadLocalRandom;
+import java.nio.ByteBuffer;
 
 /**
  * Classe responsável pela criação de tesouros. Cada tesouro só pode ser criado
@@ -49,9 +48,9 @@ public class TreasureGenerator {
 			return;
 
 		// se o temporizador já 0 chegou a altura de criar
-		if (proxTreasureCreation <= ReguladorVelocidade.tempoRelativo()) {
+		if (proxTreasureCreation <= world.getTempo()) {
 			// escolher aleatoriamente qual o tesouro a criar
-			int prob = ThreadLocalRandom.current().nextInt(100);
+			int prob = world.getAleatorio().nextInt(100);
 
 			// ver qual dos tesouros tem a probabilidade escolhida
 			int total = 0;
@@ -61,8 +60,7 @@ public class TreasureGenerator {
 				if (prob < total) {
 					// escolher a coordenada x e criar o tesouro
 					int x = tInfo[i].getImg().getComprimento()
-							+ ThreadLocalRandom.current()
-									.nextInt(world.getWidth() - 2 * tInfo[i].getImg().getComprimento());
+							+ world.getAleatorio().nextInt(world.getWidth() - 2 * tInfo[i].getImg().getComprimento());
 					t = tInfo[i].createTresure(new Point(x, 0));
 
 					break;
@@ -75,13 +73,70 @@ public class TreasureGenerator {
 		}
 	}
 
+	/**
+	 * retorna o índice do tipo de um tesouro criado por este gerador. Os
+	 * tesouros de um tipo partilham a imagem, por isso é ela que identifica o
+	 * tipo.
+	 * 
+	 * @param t o tesouro
+	 * @return o índice do tipo do tesouro, ou -1 se não for deste gerador
+	 */
+	public int indiceTipo(Tesouro t) {
+		for (int i = 0; i < tInfo.length; i++)
+			if (tInfo[i].getImg() == t.getImagem())
+				return i;
+		return -1;
+	}
+
+	/**
+	 * retorna o número máximo de tesouros que podem existir ao mesmo tempo
+	 * 
+	 * @return o número máximo de tesouros simultâneos
+	 */
+	public int getMaxTreasures() {
+		return maxTreasures;
+	}
+
+	/**
+	 * cria um tesouro de um dado tipo, sem o adicionar ao mundo
+	 * 
+	 * @param tipo o índice do tipo (ver indiceTipo)
+	 * @return o tesouro criado
+	 */
+	public Tesouro criarTesouro(int tipo) {
+		return tInfo[tipo].createTresure(new Point());
+	}
+
+	// número de bytes escritos por guardarEstado
+	public static final int TAMANHO_ESTADO = 12;
+
+	/**
+	 * guarda o estado do gerador (ver Mundo.guardarEstado)
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.putLong(proxTreasureCreation);
+		b.putInt(currentTreasures);
+	}
+
+	/**
+	 * repõe o estado guardado com guardarEstado
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b) {
+		proxTreasureCreation = b.getLong();
+		currentTreasures = b.getInt();
+	}
+
 	/**
 	 * estabelece o tempo de criação do próximo tesouro
 	 * 
 	 * @return o próximo tempo de criação
 	 */
 	private long nextCreationTime() {
-		return ReguladorVelocidade.tempoRelativo() + minTime + ThreadLocalRandom.current().nextInt(range);
+		return world.getTempo() + minTime + world.getAleatorio().nextInt(range);
 	}
 
 	public void treasureRemoved() {
@@ -0,0 +1,139 @@
+package jetpac.mundo;
+
+/**
+ * Gerador de números aleatórios do mundo. Usa o algoritmo SplitMix64: o estado
+ * é um só long, por isso pode ser guardado e reposto, e a mesma semente dá
+ * sempre a mesma sequência. Assim, com a mesma semente e as mesmas teclas,
+ * um jogo é repetido exatamente igual.
+ * <p>
+ * Não é seguro para ser usado em várias threads; cada mundo tem o seu.
+ */
+public final class Aleatorio {
+
+	// incremento da sequência de Weyl usada pelo SplitMix64
+	private static final long GAMA = 0x9E3779B97F4A7C15L;
+
+	private long estado; // estado do gerador
+
+	/**
+	 * Cria um gerador com a semente indicada
+	 * 
+	 * @param semente a semente
+	 */
+	public Aleatorio(long semente) {
+		estado = semente;
+	}
+
+	/**
+	 * Cria um gerador independente deste, com a sequência derivada do próximo
+	 * valor deste gerador
+	 * 
+	 * @return o novo gerador
+	 */
+	public Aleatorio split() {
+		return new Aleatorio(mistura(nextLong()));
+	}
+
+	/**
+	 * retorna o próximo long
+	 * 
+	 * @return o próximo long
+	 */
+	public long nextLong() {
+		estado += GAMA;
+		return mistura(estado);
+	}
+
+	/**
+	 * retorna um inteiro entre 0 (incluído) e limite (excluído)
+	 * 
+	 * @param limite o limite superior, que tem de ser positivo
+	 * @return o inteiro gerado
+	 */
+	public int nextInt(int limite) {
+		if (limite <= 0)
+			throw new IllegalArgumentException("limite tem de ser positivo: " + limite);
+		// método de Lemire: multiplicar 32 bits aleatórios pelo limite e rejeitar
+		// os poucos valores que causariam enviesamento
+		long m = (nextLong() >>> 32) * limite;
+		if ((m & 0xFFFFFFFFL) < limite) {
+			long rejeitar = (0x100000000L - limite) % limite;
+			while ((m & 0xFFFFFFFFL) < rejeitar)
+				m = (nextLong() >>> 32) * limite;
+		}
+		return (int) (m >>> 32);
+	}
+
+	/**
+	 * retorna um inteiro entre origem (incluída) e limite (excluído)
+	 * 
+	 * @param origem o menor valor possível
+	 * @param limite o limite superior, que tem de ser maior que origem
+	 * @return o inteiro gerado
+	 */
+	public int nextInt(int origem, int limite) {
+		if (origem >= limite)
+			throw new IllegalArgumentException("limite tem de ser maior que origem: " + origem + ", " + limite);
+		return origem + nextInt(limite - origem);
+	}
+
+	/**
+	 * retorna um float entre 0 (incluído) e 1 (excluído)
+	 * 
+	 * @return o float gerado
+	 */
+	public float nextFloat() {
+		return (nextLong() >>> 40) * 0x1.0p-24f;
+	}
+
+	/**
+	 * retorna um float entre origem (incluída) e limite (excluído)
+	 * 
+	 * @param origem o menor valor possível
+	 * @param limite o limite superior, que tem de ser maior que origem
+	 * @return o float gerado
+	 */
+	public float nextFloat(float origem, float limite) {
+		if (!(origem < limite))
+			throw new IllegalArgumentException("limite tem de ser maior que origem: " + origem + ", " + limite);
+		float r = origem + nextFloat() * (limite - origem);
+		// arredondamentos podem dar o limite
+		return r < limite ? r : Math.nextDown(limite);
+	}
+
+	/**
+	 * retorna um booleano
+	 * 
+	 * @return o booleano gerado
+	 */
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	/**
+	 * retorna o estado atual do gerador, para ser guardado
+	 * 
+	 * @return o estado atual do gerador
+	 */
+	public long getEstado() {
+		return estado;
+	}
+
+	/**
+	 * repõe um estado guardado com getEstado
+	 * 
+	 * @param estado o estado a repor
+	 */
+	public void setEstado(long estado) {
+		this.estado = estado;
+	}
+
+	/**
+	 * função de mistura do SplitMix64
+	 */
+	private static long mistura(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
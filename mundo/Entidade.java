@@ -0,0 +1,38 @@
+package jetpac.mundo;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+
+/**
+ * Esta interface define uma entidade que o mundo guarda no seu registo e que é
+ * atualizada e desenhada em cada ciclo.
+ */
+public interface Entidade {
+
+	/**
+	 * atualiza a entidade. Método chamado a cada ciclo de processamento.
+	 */
+	public void update();
+
+	/**
+	 * desenha a entidade.
+	 * 
+	 * @param g onde desenhar
+	 */
+	public void draw(Graphics2D g);
+
+	/**
+	 * retorna o rectângulo ocupado pela entidade no ecrã
+	 * 
+	 * @return o rectângulo ocupado pela entidade
+	 */
+	public Rectangle getBounds();
+
+	/**
+	 * indica se a entidade ainda está ativa. As entidades que não estão ativas
+	 * são retiradas do mundo no fim do ciclo.
+	 * 
+	 * @return true, se a entidade ainda está ativa
+	 */
+	public boolean isActive();
+}
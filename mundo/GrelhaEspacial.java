@@ -0,0 +1,224 @@
+package jetpac.mundo;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Grelha uniforme para encontrar rapidamente os elementos que estão numa dada
+ * zona do mundo. O mundo é dividido em células quadradas e cada elemento fica
+ * registado nas células que o seu rectângulo envolvente ocupa. As células são
+ * guardadas numa tabela de dispersão, por isso a grelha não precisa de
+ * conhecer as dimensões do mundo.
+ * 
+ * @param <T> o tipo de elementos guardados na grelha
+ */
+public class GrelhaEspacial<T> {
+
+	// número de listas da tabela de dispersão (tem de ser potência de 2)
+	private static final int NUM_BALDES = 1024;
+
+	/**
+	 * Informação guardada para cada elemento da grelha
+	 */
+	private static class Entrada<T> {
+		private T elemento;
+		private int x, y, comp, alt; // rectângulo envolvente do elemento
+		private int col0, lin0, col1, lin1; // células ocupadas pelo elemento
+		private int marca; // última consulta em que foi encontrado
+		private int ocupados[] = new int[4]; // baldes onde está, sem repetições
+		private int posicoes[] = new int[4]; // posição da entrada em cada um deles
+		private int numOcupados;
+
+		private Entrada(T elemento) {
+			this.elemento = elemento;
+		}
+
+		private void juntar(int balde, int pos) {
+			if (numOcupados == ocupados.length) {
+				ocupados = Arrays.copyOf(ocupados, numOcupados * 2);
+				posicoes = Arrays.copyOf(posicoes, numOcupados * 2);
+			}
+			ocupados[numOcupados] = balde;
+			posicoes[numOcupados++] = pos;
+		}
+
+		// índice do balde na lista dos ocupados (a entrada está mesmo nele)
+		private int indice(int balde) {
+			int i = 0;
+			while (ocupados[i] != balde)
+				i++;
+			return i;
+		}
+	}
+
+	private final int tamCelula; // tamanho de cada célula
+	private final ArrayList<Entrada<T>> baldes[];
+	private final IdentityHashMap<T, Entrada<T>> entradas = new IdentityHashMap<>();
+	private final ArrayList<Entrada<T>> livres = new ArrayList<>(); // entradas para reutilizar
+	private int marcaAtual; // número da consulta atual, para não repetir elementos
+	private final int marcasBaldes[] = new int[NUM_BALDES]; // última inserção que usou cada balde
+	private int insercaoAtual; // número da inserção atual, para não repetir baldes
+
+	/**
+	 * Cria a grelha
+	 * 
+	 * @param tamCelula o tamanho de cada célula
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public GrelhaEspacial(int tamCelula) {
+		this.tamCelula = tamCelula;
+		baldes = new ArrayList[NUM_BALDES];
+		for (int i = 0; i < NUM_BALDES; i++)
+			baldes[i] = new ArrayList<>();
+	}
+
+	/**
+	 * Adiciona um elemento à grelha ou atualiza a sua posição. Se o elemento
+	 * continuar nas mesmas células a grelha não é alterada.
+	 * 
+	 * @param elem o elemento
+	 * @param r    o rectângulo envolvente do elemento
+	 */
+	public void atualizar(T elem, Rectangle r) {
+		Entrada<T> e = entradas.get(elem);
+		if (e == null) {
+			e = livres.isEmpty() ? new Entrada<>(elem) : livres.remove(livres.size() - 1);
+			e.elemento = elem;
+			entradas.put(elem, e);
+			definirLimites(e, r);
+			inserir(e);
+			return;
+		}
+		int col0 = Math.floorDiv(r.x, tamCelula);
+		int lin0 = Math.floorDiv(r.y, tamCelula);
+		int col1 = Math.floorDiv(r.x + r.width, tamCelula);
+		int lin1 = Math.floorDiv(r.y + r.height, tamCelula);
+		if (col0 == e.col0 && lin0 == e.lin0 && col1 == e.col1 && lin1 == e.lin1) {
+			// continua nas mesmas células, basta atualizar o rectângulo
+			e.x = r.x;
+			e.y = r.y;
+			e.comp = r.width;
+			e.alt = r.height;
+			return;
+		}
+		retirar(e);
+		definirLimites(e, r);
+		inserir(e);
+	}
+
+	/**
+	 * retira um elemento da grelha
+	 * 
+	 * @param elem o elemento a retirar
+	 */
+	public void remover(T elem) {
+		Entrada<T> e = entradas.remove(elem);
+		if (e != null) {
+			retirar(e);
+			e.elemento = null;
+			livres.add(e);
+		}
+	}
+
+	/**
+	 * retira todos os elementos da grelha
+	 */
+	public void limpar() {
+		for (ArrayList<Entrada<T>> balde : baldes)
+			balde.clear();
+		for (Entrada<T> e : entradas.values()) {
+			e.elemento = null;
+			e.numOcupados = 0;
+			livres.add(e);
+		}
+		entradas.clear();
+	}
+
+	/**
+	 * Coloca na lista de resultados os elementos cujo rectângulo envolvente
+	 * interseta a zona indicada. A lista é limpa antes de ser preenchida.
+	 * 
+	 * @param zona       a zona a consultar
+	 * @param resultados onde colocar os elementos encontrados
+	 */
+	public void consultar(Rectangle zona, List<T> resultados) {
+		resultados.clear();
+		marcaAtual++;
+		int col0 = Math.floorDiv(zona.x, tamCelula);
+		int lin0 = Math.floorDiv(zona.y, tamCelula);
+		int col1 = Math.floorDiv(zona.x + zona.width, tamCelula);
+		int lin1 = Math.floorDiv(zona.y + zona.height, tamCelula);
+		for (int lin = lin0; lin <= lin1; lin++)
+			for (int col = col0; col <= col1; col++) {
+				ArrayList<Entrada<T>> balde = baldes[balde(col, lin)];
+				for (int i = 0; i < balde.size(); i++) {
+					Entrada<T> e = balde.get(i);
+					if (e.marca == marcaAtual)
+						continue;
+					// o mesmo balde pode ter células diferentes, ver se interseta mesmo
+					if (e.x < zona.x + zona.width && zona.x < e.x + e.comp && e.y < zona.y + zona.height
+							&& zona.y < e.y + e.alt) {
+						e.marca = marcaAtual;
+						resultados.add(e.elemento);
+					}
+				}
+			}
+	}
+
+	/**
+	 * retorna o número de elementos na grelha
+	 * 
+	 * @return o número de elementos na grelha
+	 */
+	public int tamanho() {
+		return entradas.size();
+	}
+
+	private void definirLimites(Entrada<T> e, Rectangle r) {
+		e.x = r.x;
+		e.y = r.y;
+		e.comp = r.width;
+		e.alt = r.height;
+		e.col0 = Math.floorDiv(r.x, tamCelula);
+		e.lin0 = Math.floorDiv(r.y, tamCelula);
+		e.col1 = Math.floorDiv(r.x + r.width, tamCelula);
+		e.lin1 = Math.floorDiv(r.y + r.height, tamCelula);
+	}
+
+	private void inserir(Entrada<T> e) {
+		insercaoAtual++;
+		for (int lin = e.lin0; lin <= e.lin1; lin++)
+			for (int col = e.col0; col <= e.col1; col++) {
+				int b = balde(col, lin);
+				// uma entrada grande pode cair duas vezes no mesmo balde
+				if (marcasBaldes[b] == insercaoAtual)
+					continue;
+				marcasBaldes[b] = insercaoAtual;
+				e.juntar(b, baldes[b].size());
+				baldes[b].add(e);
+			}
+	}
+
+	private void retirar(Entrada<T> e) {
+		for (int i = 0; i < e.numOcupados; i++) {
+			int b = e.ocupados[i];
+			ArrayList<Entrada<T>> balde = baldes[b];
+			// trocar com o último para a remoção ser rápida
+			int idx = e.posicoes[i];
+			int ultimo = balde.size() - 1;
+			Entrada<T> movida = balde.get(ultimo);
+			balde.set(idx, movida);
+			balde.remove(ultimo);
+			if (movida != e)
+				movida.posicoes[movida.indice(b)] = idx;
+		}
+		e.numOcupados = 0;
+	}
+
+	private static int balde(int col, int lin) {
+		return ((col * 73856093) ^ (lin * 19349663)) & (NUM_BALDES - 1);
+	}
+}
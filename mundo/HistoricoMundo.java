@@ -0,0 +1,238 @@
+package jetpac.mundo;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Histórico dos últimos estados do mundo, para se poder voltar atrás no jogo.
+ * Os estados são guardados num anel com um número fixo de entradas, todas
+ * reservadas na criação com o tamanho máximo do estado do mundo, por isso o
+ * histórico não faz alocações enquanto se joga. De INTERVALO_CHAVE em
+ * INTERVALO_CHAVE ciclos é guardado um estado completo (uma chave); os outros
+ * estados guardam apenas as diferenças (XOR) em relação à última chave. Como
+ * de um ciclo para o outro quase nada muda, as diferenças são quase só zeros e
+ * são guardadas como sequências de zeros e de bytes literais. Se as
+ * diferenças não couberem numa entrada, o estado é guardado como chave.
+ */
+class HistoricoMundo {
+
+	// de quantos em quantos ciclos se guarda um estado completo
+	private static final int INTERVALO_CHAVE = 32;
+
+	private final byte entradas[][]; // os estados, completos ou codificados
+	private final int tamanhos[]; // o número de bytes usados em cada entrada
+	private final boolean chave[]; // se a entrada é um estado completo
+	private final int base[]; // a chave de cada entrada codificada
+
+	private int inicio; // a entrada mais antiga
+	private int total; // o número de entradas guardadas
+	private int ultimaChave = -1; // a chave usada pelas novas entradas
+	private int desdeChave; // ciclos guardados desde a última chave
+
+	// onde é escrito o estado do mundo e descodificado um estado antigo
+	private final ByteBuffer rascunho;
+
+	/**
+	 * Cria o histórico
+	 * 
+	 * @param ciclos        o número mínimo de ciclos que se pode recuar
+	 * @param tamanhoMaximo o tamanho máximo do estado do mundo, em bytes (ver
+	 *                      Mundo.getTamanhoMaximoEstado)
+	 */
+	HistoricoMundo(int ciclos, int tamanhoMaximo) {
+		// as entradas que dependem de uma chave são descartadas com ela, por isso
+		// guarda-se mais um intervalo para haver sempre pelo menos os ciclos pedidos
+		int capacidade = Math.max(2 * INTERVALO_CHAVE, ciclos + INTERVALO_CHAVE);
+		rascunho = ByteBuffer.allocate(tamanhoMaximo);
+		entradas = new byte[capacidade][tamanhoMaximo];
+		tamanhos = new int[capacidade];
+		chave = new boolean[capacidade];
+		base = new int[capacidade];
+	}
+
+	/**
+	 * retorna o número de ciclos que se pode recuar
+	 * 
+	 * @return o número de ciclos que se pode recuar
+	 */
+	int getTotal() {
+		return total;
+	}
+
+	/**
+	 * esquece todos os estados guardados
+	 */
+	void limpar() {
+		total = 0;
+		ultimaChave = -1;
+	}
+
+	/**
+	 * guarda o estado atual do mundo. Se o estado for maior que o tamanho
+	 * máximo não pode ser guardado, e os estados anteriores são esquecidos, já
+	 * que não se pode recuar para eles sem passar por este.
+	 * 
+	 * @param m o mundo
+	 */
+	void gravar(Mundo m) {
+		rascunho.clear();
+		try {
+			m.guardarEstado(rascunho);
+		} catch (BufferOverflowException e) {
+			limpar();
+			return;
+		}
+		int n = rascunho.position();
+		byte estado[] = rascunho.array();
+
+		if (total == entradas.length)
+			descartarMaisAntiga();
+		int e = (inicio + total) % entradas.length;
+
+		int cod = -1;
+		if (ultimaChave >= 0 && desdeChave < INTERVALO_CHAVE)
+			cod = codificar(estado, n, entradas[ultimaChave], tamanhos[ultimaChave], entradas[e]);
+		if (cod < 0) {
+			System.arraycopy(estado, 0, entradas[e], 0, n);
+			tamanhos[e] = n;
+			chave[e] = true;
+			ultimaChave = e;
+			desdeChave = 0;
+		} else {
+			tamanhos[e] = cod;
+			chave[e] = false;
+			base[e] = ultimaChave;
+		}
+		total++;
+		desdeChave++;
+	}
+
+	/**
+	 * repõe o estado do mundo de há alguns ciclos atrás. Esse estado e todos os
+	 * mais recentes saem do histórico.
+	 * 
+	 * @param ciclos quantos ciclos recuar (1 é o último estado guardado)
+	 * @param m      o mundo a repor
+	 * @return false se o histórico não tem estados suficientes
+	 */
+	boolean restaurar(int ciclos, Mundo m) {
+		if (ciclos <= 0 || ciclos > total)
+			return false;
+		int e = (inicio + total - ciclos) % entradas.length;
+
+		int n;
+		if (chave[e])
+			n = tamanhos[e];
+		else
+			n = lerVarint(entradas[e], 0);
+		if (chave[e])
+			System.arraycopy(entradas[e], 0, rascunho.array(), 0, n);
+		else
+			descodificar(entradas[e], entradas[base[e]], tamanhos[base[e]], rascunho.array());
+		rascunho.clear();
+		rascunho.limit(n);
+		m.restaurarEstado(rascunho);
+
+		// o próximo estado guardado tem de ser uma chave
+		total -= ciclos;
+		ultimaChave = -1;
+		return true;
+	}
+
+	/**
+	 * descarta a entrada mais antiga e, se for uma chave, as entradas que
+	 * dependem dela
+	 */
+	private void descartarMaisAntiga() {
+		do {
+			if (inicio == ultimaChave)
+				ultimaChave = -1;
+			inicio = (inicio + 1) % entradas.length;
+			total--;
+		} while (total > 0 && !chave[inicio]);
+	}
+
+	/**
+	 * codifica as diferenças entre um estado e a sua chave. O formato é o
+	 * tamanho do estado seguido de pares (número de zeros, número de literais,
+	 * literais), todos os números em varint.
+	 * 
+	 * @return o número de bytes escritos, ou -1 se não couberem em dest
+	 */
+	private static int codificar(byte estado[], int n, byte chave[], int nChave, byte dest[]) {
+		if (dest.length < 5)
+			return -1;
+		int pos = escreverVarint(dest, 0, n);
+		int i = 0;
+		while (i < n) {
+			int zeros = i;
+			while (i < n && diferenca(estado, chave, nChave, i) == 0)
+				i++;
+			zeros = i - zeros;
+			int literais = i;
+			while (i < n && diferenca(estado, chave, nChave, i) != 0)
+				i++;
+			literais = i - literais;
+			// cada varint ocupa no máximo 5 bytes
+			if (pos + 10 + literais > dest.length)
+				return -1;
+			pos = escreverVarint(dest, pos, zeros);
+			pos = escreverVarint(dest, pos, literais);
+			for (int j = i - literais; j < i; j++)
+				dest[pos++] = diferenca(estado, chave, nChave, j);
+		}
+		return pos;
+	}
+
+	/**
+	 * descodifica um estado codificado com codificar
+	 */
+	private static void descodificar(byte cod[], byte chave[], int nChave, byte dest[]) {
+		int n = lerVarint(cod, 0);
+		int pos = tamanhoVarint(n);
+		int i = 0;
+		while (i < n) {
+			int zeros = lerVarint(cod, pos);
+			pos += tamanhoVarint(zeros);
+			int literais = lerVarint(cod, pos);
+			pos += tamanhoVarint(literais);
+			for (int fim = i + zeros; i < fim; i++)
+				dest[i] = i < nChave ? chave[i] : 0;
+			for (int fim = i + literais; i < fim; i++)
+				dest[i] = (byte) (cod[pos++] ^ (i < nChave ? chave[i] : 0));
+		}
+	}
+
+	// a diferença no byte i; para lá do fim da chave é o próprio byte
+	private static byte diferenca(byte estado[], byte chave[], int nChave, int i) {
+		return (byte) (estado[i] ^ (i < nChave ? chave[i] : 0));
+	}
+
+	private static int escreverVarint(byte dest[], int pos, int v) {
+		while ((v & ~0x7F) != 0) {
+			dest[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		dest[pos++] = (byte) v;
+		return pos;
+	}
+
+	private static int lerVarint(byte cod[], int pos) {
+		int v = 0;
+		for (int desl = 0;; desl += 7) {
+			byte b = cod[pos++];
+			v |= (b & 0x7F) << desl;
+			if (b >= 0)
+				return v;
+		}
+	}
+
+	private static int tamanhoVarint(int v) {
+		int n = 1;
+		while ((v & ~0x7F) != 0) {
+			v >>>= 7;
+			n++;
+		}
+		return n;
+	}
+}
@@ -0,0 +1,186 @@
+package jetpac.mundo;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import jetpac.astro.Plataforma;
+
+/**
+ * Índice imutável das plataformas de um nível. As plataformas não se mexem,
+ * por isso os seus rectângulos são lidos uma só vez e organizados numa árvore
+ * de rectângulos envolventes (AABB). Uma consulta só desce pelos ramos cujo
+ * rectângulo interseta a zona pedida, o que dá um tempo logarítmico no número
+ * de plataformas.
+ */
+public final class IndicePlataformas {
+
+	// número máximo de plataformas em cada folha
+	private static final int MAX_FOLHA = 4;
+
+	// plataformas e respetivos rectângulos, pela ordem das folhas
+	private final Plataforma plataformas[];
+	private final int x0[], y0[], x1[], y1[];
+
+	// nós da árvore: rectângulo envolvente e filhos (ou intervalo, se for folha)
+	private final int nx0[], ny0[], nx1[], ny1[];
+	private final int esq[], dir[]; // filhos; numa folha esq < 0
+	private final int inicio[], fim[]; // plataformas da folha
+	private int numNos;
+
+	// pilha usada nas consultas
+	private final int pilha[];
+
+	/**
+	 * Cria o índice com as plataformas indicadas
+	 * 
+	 * @param lista as plataformas a indexar
+	 */
+	public IndicePlataformas(List<Plataforma> lista) {
+		int n = lista.size();
+		plataformas = lista.toArray(new Plataforma[n]);
+		x0 = new int[n];
+		y0 = new int[n];
+		x1 = new int[n];
+		y1 = new int[n];
+		for (int i = 0; i < n; i++) {
+			Rectangle r = plataformas[i].getBounds();
+			x0[i] = r.x;
+			y0[i] = r.y;
+			x1[i] = r.x + r.width;
+			y1[i] = r.y + r.height;
+		}
+
+		// uma árvore binária com folhas de até MAX_FOLHA elementos tem menos de 2n nós
+		int maxNos = Math.max(1, 2 * n);
+		nx0 = new int[maxNos];
+		ny0 = new int[maxNos];
+		nx1 = new int[maxNos];
+		ny1 = new int[maxNos];
+		esq = new int[maxNos];
+		dir = new int[maxNos];
+		inicio = new int[maxNos];
+		fim = new int[maxNos];
+		construir(0, n);
+		pilha = new int[maxNos];
+	}
+
+	/**
+	 * Coloca na lista de resultados as plataformas cujo rectângulo interseta a
+	 * zona indicada. A lista é limpa antes de ser preenchida.
+	 * 
+	 * @param zona       a zona a consultar
+	 * @param resultados onde colocar as plataformas encontradas
+	 */
+	public void consultar(Rectangle zona, List<Plataforma> resultados) {
+		resultados.clear();
+		if (plataformas.length == 0)
+			return;
+		int zx0 = zona.x, zy0 = zona.y;
+		int zx1 = zona.x + zona.width, zy1 = zona.y + zona.height;
+		int topo = 0;
+		pilha[topo++] = 0;
+		while (topo > 0) {
+			int no = pilha[--topo];
+			if (nx0[no] >= zx1 || zx0 >= nx1[no] || ny0[no] >= zy1 || zy0 >= ny1[no])
+				continue;
+			if (esq[no] >= 0) {
+				pilha[topo++] = esq[no];
+				pilha[topo++] = dir[no];
+				continue;
+			}
+			for (int i = inicio[no]; i < fim[no]; i++)
+				if (x0[i] < zx1 && zx0 < x1[i] && y0[i] < zy1 && zy0 < y1[i])
+					resultados.add(plataformas[i]);
+		}
+	}
+
+	/**
+	 * retorna o número de plataformas indexadas
+	 * 
+	 * @return o número de plataformas
+	 */
+	public int tamanho() {
+		return plataformas.length;
+	}
+
+	/**
+	 * constroi o nó para as plataformas entre ini e fim, dividindo-as ao meio
+	 * pela mediana do centro ao longo do eixo mais comprido
+	 */
+	private int construir(int ini, int f) {
+		int no = numNos++;
+		int bx0 = Integer.MAX_VALUE, by0 = Integer.MAX_VALUE;
+		int bx1 = Integer.MIN_VALUE, by1 = Integer.MIN_VALUE;
+		for (int i = ini; i < f; i++) {
+			bx0 = Math.min(bx0, x0[i]);
+			by0 = Math.min(by0, y0[i]);
+			bx1 = Math.max(bx1, x1[i]);
+			by1 = Math.max(by1, y1[i]);
+		}
+		nx0[no] = bx0;
+		ny0[no] = by0;
+		nx1[no] = bx1;
+		ny1[no] = by1;
+
+		if (f - ini <= MAX_FOLHA) {
+			esq[no] = -1;
+			dir[no] = -1;
+			inicio[no] = ini;
+			fim[no] = f;
+			return no;
+		}
+
+		boolean eixoX = bx1 - bx0 >= by1 - by0;
+		int meio = (ini + f) / 2;
+		partir(ini, f, meio, eixoX);
+		esq[no] = construir(ini, meio);
+		dir[no] = construir(meio, f);
+		return no;
+	}
+
+	// seleção rápida pelo centro no eixo escolhido: põe em k a plataforma que
+	// lá ficaria se estivessem ordenadas, com as de centro menor ou igual antes
+	// e as de centro maior ou igual depois. Não ordena o resto, por isso a
+	// construção da árvore é O(n log n) em média
+	private void partir(int ini, int f, int k, boolean eixoX) {
+		int lo = ini, hi = f - 1;
+		while (lo < hi) {
+			int pivo = centro((lo + hi) >>> 1, eixoX);
+			int i = lo, j = hi;
+			while (i <= j) {
+				while (centro(i, eixoX) < pivo)
+					i++;
+				while (centro(j, eixoX) > pivo)
+					j--;
+				if (i <= j)
+					trocar(i++, j--);
+			}
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	private int centro(int i, boolean eixoX) {
+		return eixoX ? x0[i] + x1[i] : y0[i] + y1[i];
+	}
+
+	private void trocar(int a, int b) {
+		Plataforma p = plataformas[a];
+		plataformas[a] = plataformas[b];
+		plataformas[b] = p;
+		trocar(x0, a, b);
+		trocar(y0, a, b);
+		trocar(x1, a, b);
+		trocar(y1, a, b);
+	}
+
+	private static void trocar(int v[], int a, int b) {
+		int t = v[a];
+		v[a] = v[b];
+		v[b] = t;
+	}
+}
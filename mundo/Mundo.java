@@ -1,14 +1,23 @@
 package jetpac.mundo;
 
 import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import jetpac.astro.*;
 import jetpac.drag.*;
 import jetpac.enemy.*;
 import jetpac.generator.*;
+import jetpac.mundo.RegistoEntidades.Tipo;
+import prof.jogos2D.image.ComponenteAnimado;
 import prof.jogos2D.image.ComponenteVisual;
+import prof.jogos2D.util.ReguladorVelocidade;
 
 /**
  * Esta classe é responsável por manter toda a informação acerca do mundo
@@ -17,18 +26,42 @@ public class Mundo {
 
 	private ComponenteVisual background; // imagem de fundo do nível
 
+	// imagem com o fundo e as plataformas fixas, criada uma vez por nível
+	private BufferedImage camadaEstatica;
+
 	private Astronauta astronauta; // o astronauta
 
 	// Os vários elementos presentes no jogo
 	private Spaceship ship;
-	private ArrayList<Plataforma> platforms = new ArrayList<>();
-	private ArrayList<Laser> lasers = new ArrayList<Laser>();
-	private ArrayList<Inimigo> enemies = new ArrayList<Inimigo>();
 
-	// TODO usar apenas uma lista
-	private ArrayList<Fuel> fuels = new ArrayList<Fuel>();
-	private ArrayList<Tesouro> tesouros = new ArrayList<Tesouro>();
-	private ArrayList<SpaceshipPart> partes = new ArrayList<SpaceshipPart>();
+	// registo de todas as plataformas, inimigos e arrastáveis
+	private RegistoEntidades registo = new RegistoEntidades();
+
+	// os lasers, num anel de capacidade fixa
+	public static final int MAX_LASERS = 64;
+	private Lasers lasers = new Lasers(MAX_LASERS);
+
+	// todas as partes da nave, mesmo as que já saíram do registo
+	private ArrayList<SpaceshipPart> todasPartes = new ArrayList<>();
+
+	// índice das plataformas, construído quando o nível acaba de ser carregado
+	private IndicePlataformas indicePlataformas;
+
+	// grelha para encontrar os inimigos numa dada zona
+	private static final int TAMANHO_CELULA = 64;
+	private GrelhaEspacial<Inimigo> grelhaInimigos = new GrelhaEspacial<>(TAMANHO_CELULA);
+
+	// as fases do ciclo que se podem executar sozinhas (ver executarFase)
+	static final int FASE_INICIO = 0, FASE_GERADORES = 1, FASE_ELEMENTOS = 2, FASE_LASERS = 3;
+
+	// quando um inimigo sai do registo também tem de sair da grelha, e volta
+	// ao gerador para ser reutilizado
+	private RegistoEntidades.Observador aoRetirar = (t, e) -> {
+		if (t == Tipo.INIMIGO) {
+			grelhaInimigos.remover((Inimigo) e);
+			getEnemyGen().devolver((Inimigo) e);
+		}
+	};
 
 	// os vários geradores de elementos
 	private TreasureGenerator treasureGen;
@@ -54,12 +87,41 @@ public class Mundo {
 
 	// estado atual
 	private EstadoMundo state = EstadoMundo.STARTING;
+	private static final EstadoMundo ESTADOS[] = EstadoMundo.values();
+
+	// toda a aleatoriedade do mundo vem daqui, para os jogos poderem ser repetidos
+	private long semente;
+	private Aleatorio aleatorio;
+
+	// relógio do mundo, em milissegundos: avança um intervalo em cada ciclo, por
+	// isso o tempo do jogo não depende do tempo real
+	private long tempo;
+	private final int duracaoCiclo = ReguladorVelocidade.getIntervaloStandard();
+
+	// pontuação e vidas do jogo, para serem guardadas com o estado do mundo
+	private int pontuacao;
+	private int vidas;
+
+	// os últimos estados do mundo, se se puder voltar atrás
+	private HistoricoMundo historico;
 
 	/**
-	 * construtor do mundo
+	 * construtor do mundo, com uma semente aleatória
 	 */
 	public Mundo() {
+		this(ThreadLocalRandom.current().nextLong());
+	}
+
+	/**
+	 * construtor do mundo
+	 * 
+	 * @param semente semente dos números aleatórios do mundo
+	 */
+	public Mundo(long semente) {
 		background = null;
+		this.semente = semente;
+		aleatorio = new Aleatorio(semente);
+		lasers.setWorld(this);
 	}
 
 	/**
@@ -68,9 +130,40 @@ public class Mundo {
 	 * @param img imagem de fundo do mundo, background image
 	 */
 	public Mundo(ComponenteVisual img) {
+		this();
 		background = img;
 	}
 
+	/**
+	 * retorna a semente com que o mundo foi criado
+	 * 
+	 * @return a semente com que o mundo foi criado
+	 */
+	public long getSemente() {
+		return semente;
+	}
+
+	/**
+	 * retorna o gerador de números aleatórios do mundo. Todos os elementos do
+	 * mundo devem usar este gerador.
+	 * 
+	 * @return o gerador de números aleatórios do mundo
+	 */
+	public Aleatorio getAleatorio() {
+		return aleatorio;
+	}
+
+	/**
+	 * retorna o tempo do mundo, em milissegundos. O tempo só avança quando o
+	 * mundo é atualizado, e é o mesmo durante todo o ciclo. Todos os
+	 * temporizadores do mundo devem usar este tempo.
+	 * 
+	 * @return o tempo do mundo, em milissegundos
+	 */
+	public long getTempo() {
+		return tempo;
+	}
+
 	/**
 	 * começar a jogar
 	 */
@@ -87,44 +180,105 @@ public class Mundo {
 	}
 
 	/**
-	 * vai desenhar todos os elementos do mundo
+	 * vai desenhar todos os elementos do mundo. Como o mundo não é
+	 * sincronizado, deve ser chamado pela mesma thread que faz o update.
 	 * 
 	 * @param g onde vai desenhar
 	 */
-	public synchronized void draw(Graphics2D g) {
-		if (background != null)
+	public void draw(Graphics2D g) {
+		// o fundo e as plataformas fixas estão todos numa só imagem
+		if (camadaEstatica == null)
+			criarCamadaEstatica();
+		if (camadaEstatica != null)
+			g.drawImage(camadaEstatica, 0, 0, null);
+		else if (background != null)
 			background.desenhar(g);
 
 		// se está a completar o astronauta não se desenha
 		if (state != EstadoMundo.COMPLETING)
 			astronauta.draw(g);
 
-		for (Plataforma p : platforms)
-			p.draw(g);
+		// desenhar só as plataformas que não estão na camada estática
+		List<Plataforma> plataformas = getPlatforms();
+		for (int i = 0; i < plataformas.size(); i++) {
+			Plataforma p = plataformas.get(i);
+			if (camadaEstatica == null || !isEstatica(p))
+				p.draw(g);
+		}
 
-		for (Laser d : lasers)
-			d.draw(g);
+		// os lasers ficam por baixo dos restantes elementos
+		lasers.desenhar(g);
+		registo.desenhar(g, Tipo.PLATAFORMA);
+
+		ship.draw(g);
+	}
 
-		for (Inimigo e : enemies)
-			e.draw(g);
+	/**
+	 * Cria a camada estática, com o fundo e as plataformas que nunca mudam
+	 * desenhados numa só imagem. Se o fundo for animado não há camada
+	 * estática.
+	 */
+	private void criarCamadaEstatica() {
+		if (background == null || background instanceof ComponenteAnimado || width <= 0 || height <= 0)
+			return;
 
-		// TODO tentar usar apenas um for
-		for (Fuel f : fuels)
-			f.draw(g);
-		for (Tesouro t : tesouros)
-			t.draw(g);
-		for (SpaceshipPart p : partes)
-			p.draw(g);
+		if (GraphicsEnvironment.isHeadless())
+			camadaEstatica = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		else
+			camadaEstatica = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+					.getDefaultConfiguration().createCompatibleImage(width, height, Transparency.OPAQUE);
+		Graphics2D g = camadaEstatica.createGraphics();
+		background.desenhar(g);
+		List<Plataforma> plataformas = getPlatforms();
+		for (int i = 0; i < plataformas.size(); i++)
+			if (isEstatica(plataformas.get(i)))
+				plataformas.get(i).draw(g);
+		g.dispose();
+	}
 
-		ship.draw(g);
+	/**
+	 * indica se a plataforma pode ficar na camada estática (se não é animada)
+	 */
+	private static boolean isEstatica(Plataforma p) {
+		return !(p.getImage() instanceof ComponenteAnimado);
+	}
+
+	/**
+	 * Marca nas zonas sujas todo o espaço ocupado pelos elementos que se mexem,
+	 * aparecem ou desaparecem. Deve ser chamado antes de desenhar cada frame.
+	 * 
+	 * @param z as zonas sujas
+	 */
+	public void marcarZonas(ZonasSujas z) {
+		// um fundo animado muda sempre
+		if (background instanceof ComponenteAnimado)
+			z.marcar(0, 0, width, height);
+
+		if (state != EstadoMundo.COMPLETING)
+			z.marcar(astronauta.getBounds());
+
+		// as plataformas só mudam se forem animadas
+		List<Plataforma> plataformas = getPlatforms();
+		for (int i = 0; i < plataformas.size(); i++)
+			if (plataformas.get(i).getImage() instanceof ComponenteAnimado)
+				z.marcar(plataformas.get(i).getBounds());
+
+		registo.marcar(z);
+		lasers.marcar(z);
+		z.marcar(ship.getZonaOcupada());
 	}
 
 	/**
 	 * Actualiza todos os elementos do mundo e remove os elementos que já não são
 	 * necessários.
 	 */
-	public synchronized int update() {
-		// reiniciar a pontuação do ciclo
+	public int update() {
+		// guardar o estado de antes do ciclo, para se poder voltar a ele
+		if (historico != null)
+			historico.gravar(this);
+
+		// avançar o relógio e reiniciar a pontuação do ciclo
+		tempo += duracaoCiclo;
 		ciclePoints = 0;
 
 		if (state == EstadoMundo.STARTING) {
@@ -142,88 +296,95 @@ public class Mundo {
 			updateElementos();
 
 			// se está a jogar precisa de usar os geradores
-			treasureGen.update();
-			fuelGen.update();
-			enemyGen.update();
+			updateGeradores();
 
 			astronauta.update();
 
-			for (Laser d : lasers)
-				d.update();
+			updateLasers();
 			return ciclePoints;
 		}
 		if (state == EstadoMundo.ENDING) {
 			updateElementos();
+			// o astronauta conta os ciclos da morte
+			astronauta.update();
 			return 0;
 		}
 		return 0;
 	}
 
-	private void updateElementos() {
-		ship.update();
-
-		for (Plataforma f : platforms)
-			f.update();
+	/**
+	 * Executa uma só fase do ciclo, sem avançar o relógio nem gravar o
+	 * histórico. Serve apenas para o MundoBenchmark poder medir cada fase em
+	 * separado; o jogo usa sempre o update.
+	 * 
+	 * @param fase FASE_INICIO (passa logo a jogar), FASE_GERADORES,
+	 *             FASE_ELEMENTOS ou FASE_LASERS
+	 */
+	void executarFase(int fase) {
+		switch (fase) {
+			case FASE_INICIO:
+				start();
+				break;
+			case FASE_GERADORES:
+				updateGeradores();
+				break;
+			case FASE_ELEMENTOS:
+				updateElementos();
+				break;
+			case FASE_LASERS:
+				updateLasers();
+				break;
+			default:
+				throw new IllegalArgumentException("fase desconhecida: " + fase);
+		}
+	}
 
-		for (int i = 0; i < enemies.size(); i++)
-			enemies.get(i).update();
+	/**
+	 * usa os geradores para criar tesouros, fuel e inimigos
+	 */
+	private void updateGeradores() {
+		treasureGen.update();
+		fuelGen.update();
+		enemyGen.update();
+	}
 
-		// TODO tentar usar apenas um for
-		for (Fuel f : fuels)
-			f.update();
-		for (Tesouro t : tesouros)
-			t.update();
-		for (SpaceshipPart p : partes)
-			p.update();
+	/**
+	 * atualiza os lasers, que têm de ser atualizados depois do astronauta
+	 */
+	private void updateLasers() {
+		lasers.update();
+	}
 
-		// retirar os disparos que já não estão ativos
-		for (int i = lasers.size() - 1; i >= 0; i--) {
-			if (lasers.get(i).isDead())
-				lasers.remove(i);
-		}
+	/**
+	 * atualiza a nave, plataformas, inimigos e arrastáveis e retira os que já
+	 * não estão ativos
+	 */
+	private void updateElementos() {
+		ship.update();
 
-		// retirar os inimigos que já não estão ativos
-		for (int i = enemies.size() - 1; i >= 0; i--) {
-			if (enemies.get(i).isDead())
-				enemies.remove(i);
-		}
+		// atualizar as plataformas, inimigos e arrastáveis de uma só vez
+		registo.atualizar();
 
-		// retirar os arrastáveis que já não estão ativos
-		// TODO tentar usar apenas um for
-		for (int i = fuels.size() - 1; i >= 0; i--) {
-			if (!fuels.get(i).isActive())
-				fuels.remove(i);
-		}
-		for (int i = tesouros.size() - 1; i >= 0; i--) {
-			if (!tesouros.get(i).isActive())
-				tesouros.remove(i);
-		}
-		for (int i = partes.size() - 1; i >= 0; i--) {
-			if (!partes.get(i).isActive())
-				partes.remove(i);
+		// os inimigos mexeram-se, atualizar a sua posição na grelha
+		List<Inimigo> inimigos = registo.getVista(Tipo.INIMIGO);
+		for (int i = 0; i < inimigos.size(); i++) {
+			Inimigo e = inimigos.get(i);
+			grelhaInimigos.atualizar(e, e.getBounds());
 		}
 
+		// retirar todos os elementos que já não estão ativos
+		registo.compactar(aoRetirar);
 	}
 
 	private void prepararCenario() {
 		// não pode começar enquanto houverem coisas a cair
 		boolean start = true;
-		// TODO tentar usar apenas um for
-		for (Fuel f : fuels)
-			if (f.isFalling()) {
-				start = false;
-				break;
-			}
-		for (Tesouro t : tesouros)
-			if (t.isFalling()) {
-				start = false;
-				break;
-			}
-		for (SpaceshipPart p : partes)
-			if (p.isFalling()) {
-				start = false;
-				break;
-			}
+		for (Tipo t : RegistoEntidades.ARRASTAVEIS) {
+			List<Arrastavel> arrastaveis = registo.getVista(t);
+			for (int i = 0; start && i < arrastaveis.size(); i++)
+				if (arrastaveis.get(i).isFalling())
+					start = false;
+		}
 
 		if (ship.isFalling())
 			start = false;
@@ -232,13 +393,8 @@ public class Mundo {
 			start();
 
 		ship.update();
-		// TODO tentar usar apenas um for
-		for (Fuel f : fuels)
-			f.update();
-		for (Tesouro t : tesouros)
-			t.update();
-		for (SpaceshipPart p : partes)
-			p.update();
+		for (Tipo t : RegistoEntidades.ARRASTAVEIS)
+			registo.atualizar(t);
 	}
 
 	private int subirNave() {
@@ -275,6 +431,7 @@ public class Mundo {
 	 */
 	public void setBackground(ComponenteVisual fundo) {
 		this.background = fundo;
+		camadaEstatica = null;
 	}
 
 	/**
@@ -297,30 +454,31 @@ public class Mundo {
 	}
 
 	public void addFuel(Fuel f) {
-		fuels.add(f);
+		registo.adicionar(Tipo.FUEL, f);
 		f.setWorld(this);
 	}
 
 	public List<Fuel> getFuel() {
-		return Collections.unmodifiableList(fuels);
+		return registo.getVista(Tipo.FUEL);
 	}
 
 	public void addTesouro(Tesouro t) {
-		tesouros.add(t);
+		registo.adicionar(Tipo.TESOURO, t);
 		t.setWorld(this);
 	}
 
 	public List<Tesouro> getTesouros() {
-		return Collections.unmodifiableList(tesouros);
+		return registo.getVista(Tipo.TESOURO);
 	}
 
 	public void addSpaceshipPart(SpaceshipPart s) {
-		partes.add(s);
+		registo.adicionar(Tipo.PARTE, s);
+		todasPartes.add(s);
 		s.setWorld(this);
 	}
 
 	public List<SpaceshipPart> getSpaceshipParts() {
-		return Collections.unmodifiableList(partes);
+		return registo.getVista(Tipo.PARTE);
 	}
 
 	public void addSpaceship(Spaceship s) {
@@ -343,8 +501,11 @@ public class Mundo {
 	 * @param p a plataforma a adicionar
 	 */
 	public void addPlatform(Plataforma p) {
-		platforms.add(p);
+		registo.adicionar(Tipo.PLATAFORMA, p);
 		p.setWorld(this);
+		// o índice e a camada estática já não estão atualizados
+		indicePlataformas = null;
+		camadaEstatica = null;
 	}
 
 	/**
@@ -353,17 +514,52 @@ public class Mundo {
 	 * @return as plataformas
 	 */
 	public List<Plataforma> getPlatforms() {
-		return Collections.unmodifiableList(platforms);
+		return registo.getVista(Tipo.PLATAFORMA);
 	}
 
 	/**
-	 * adiciona um laser
+	 * Coloca na lista indicada as plataformas que intersetam uma dada zona. A
+	 * lista é limpa antes de ser preenchida. Cada chamador deve ter a sua lista,
+	 * para as consultas poderem ser feitas umas dentro das outras.
 	 * 
-	 * @param l o laser a adicionar
+	 * @param zona       a zona onde procurar
+	 * @param resultados onde colocar as plataformas encontradas
+	 * @return a lista resultados, para se poder percorrer logo
 	 */
-	public void addLaser(Laser l) {
-		lasers.add(l);
-		l.setWorld(this);
+	public List<Plataforma> getPlatformsIn(Rectangle zona, List<Plataforma> resultados) {
+		if (indicePlataformas == null)
+			nivelCarregado();
+		indicePlataformas.consultar(zona, resultados);
+		return resultados;
+	}
+
+	/**
+	 * indica que o nível acabou de ser carregado. Como as plataformas já não se
+	 * mexem, constroi o índice que permite encontrá-las rapidamente.
+	 */
+	public void nivelCarregado() {
+		indicePlataformas = new IndicePlataformas(getPlatforms());
+	}
+
+	/**
+	 * dispara um laser. Se já houver MAX_LASERS lasers, o mais antigo
+	 * desaparece.
+	 * 
+	 * @param x       coordenada x do início do laser
+	 * @param y       coordenada y do laser
+	 * @param alcance alcance do laser (negativo se for para a esquerda)
+	 */
+	public void addLaser(int x, int y, int alcance) {
+		lasers.disparar(x, y, alcance, aleatorio);
+	}
+
+	/**
+	 * retorna o número de lasers
+	 * 
+	 * @return o número de lasers
+	 */
+	public int getNumLasers() {
+		return lasers.tamanho();
 	}
 
 	/**
@@ -425,7 +621,7 @@ public class Mundo {
 	 */
 	public void completed() {
 		state = EstadoMundo.COMPLETING;
-		lasers.clear();
+		lasers.limpar();
 	}
 
 	/**
@@ -451,8 +647,19 @@ public class Mundo {
 	 */
 	public void dying() {
 		state = EstadoMundo.ENDING;
-		lasers.clear();
-		enemies.clear();
+		lasers.limpar();
+		retirarInimigos();
+	}
+
+	/**
+	 * retira todos os inimigos do mundo e devolve-os ao gerador
+	 */
+	private void retirarInimigos() {
+		List<Inimigo> inimigos = getEnemies();
+		for (int i = 0; i < inimigos.size(); i++)
+			enemyGen.devolver(inimigos.get(i));
+		registo.limpar(Tipo.INIMIGO);
+		grelhaInimigos.limpar();
 	}
 
 	/**
@@ -470,7 +677,8 @@ public class Mundo {
 	 * @param e o inimigo a adicionar
 	 */
 	public void addEnemy(Inimigo e) {
-		enemies.add(e);
+		registo.adicionar(Tipo.INIMIGO, e);
+		grelhaInimigos.atualizar(e, e.getBounds());
 		e.setWorld(this);
 	}
 
@@ -480,7 +688,7 @@ public class Mundo {
 	 * @return o número de inimigos
 	 */
 	public int getNumEnemies() {
-		return enemies.size();
+		return registo.tamanho(Tipo.INIMIGO);
 	}
 
 	/**
@@ -489,7 +697,224 @@ public class Mundo {
 	 * @return os inimigos
 	 */
 	public List<Inimigo> getEnemies() {
-		return Collections.unmodifiableList(enemies);
+		return registo.getVista(Tipo.INIMIGO);
+	}
+
+	/**
+	 * Coloca na lista indicada os inimigos que intersetam uma dada zona. A
+	 * lista é limpa antes de ser preenchida. Cada chamador deve ter a sua lista,
+	 * para as consultas poderem ser feitas umas dentro das outras.
+	 * 
+	 * @param zona       a zona onde procurar
+	 * @param resultados onde colocar os inimigos encontrados
+	 * @return a lista resultados, para se poder percorrer logo
+	 */
+	public List<Inimigo> getEnemiesIn(Rectangle zona, List<Inimigo> resultados) {
+		grelhaInimigos.consultar(zona, resultados);
+		return resultados;
+	}
+
+	/**
+	 * define a pontuação e as vidas do jogo, que são guardadas com o estado do
+	 * mundo e repostas quando se volta atrás
+	 * 
+	 * @param pontuacao a pontuação atual
+	 * @param vidas     as vidas atuais
+	 */
+	public void setMarcador(int pontuacao, int vidas) {
+		this.pontuacao = pontuacao;
+		this.vidas = vidas;
+	}
+
+	/**
+	 * retorna a pontuação definida com setMarcador
+	 * 
+	 * @return a pontuação
+	 */
+	public int getPontuacao() {
+		return pontuacao;
+	}
+
+	/**
+	 * retorna as vidas definidas com setMarcador
+	 * 
+	 * @return as vidas
+	 */
+	public int getVidas() {
+		return vidas;
+	}
+
+	/**
+	 * Guarda todo o estado dinâmico do mundo: o relógio, o astronauta, a nave,
+	 * os geradores, os elementos que se mexem e o gerador de números aleatórios.
+	 * O que vem do ficheiro do nível (imagens, plataformas, configuração dos
+	 * geradores) não é guardado, por isso o estado só pode ser reposto num mundo
+	 * criado a partir do mesmo nível.
+	 * 
+	 * @param b onde guardar o estado
+	 */
+	public void guardarEstado(ByteBuffer b) {
+		b.put((byte) state.ordinal());
+		b.put((byte) (completed ? 1 : 0));
+		b.putLong(tempo);
+		b.putInt(pontuacao);
+		b.putInt(vidas);
+
+		astronauta.guardarEstado(b);
+		ship.guardarEstado(b);
+		treasureGen.guardarEstado(b);
+		fuelGen.guardarEstado(b);
+		enemyGen.guardarEstado(b);
+
+		// as partes não são recriadas, guarda-se qual é cada uma
+		List<SpaceshipPart> partes = getSpaceshipParts();
+		b.putShort((short) partes.size());
+		for (int i = 0; i < partes.size(); i++) {
+			b.putShort((short) todasPartes.indexOf(partes.get(i)));
+			partes.get(i).guardarEstado(b);
+		}
+		List<Fuel> fuels = getFuel();
+		b.putShort((short) fuels.size());
+		for (int i = 0; i < fuels.size(); i++)
+			fuels.get(i).guardarEstado(b);
+		List<Tesouro> tesouros = getTesouros();
+		b.putShort((short) tesouros.size());
+		for (int i = 0; i < tesouros.size(); i++) {
+			b.put((byte) treasureGen.indiceTipo(tesouros.get(i)));
+			tesouros.get(i).guardarEstado(b);
+		}
+		List<Inimigo> inimigos = getEnemies();
+		b.putShort((short) inimigos.size());
+		for (int i = 0; i < inimigos.size(); i++)
+			inimigos.get(i).guardarEstado(b);
+		lasers.guardarEstado(b);
+
+		b.putLong(aleatorio.getEstado());
+	}
+
+	/**
+	 * retorna o número máximo de bytes que guardarEstado pode escrever neste
+	 * mundo, com todos os elementos que os geradores podem criar ao mesmo
+	 * tempo e o anel de lasers cheio
+	 * 
+	 * @return o tamanho máximo do estado do mundo
+	 */
+	public int getTamanhoMaximoEstado() {
+		int n = 18 + Astronauta.TAMANHO_ESTADO + ship.getTamanhoMaximoEstado() + TreasureGenerator.TAMANHO_ESTADO
+				+ FuelGenerator.TAMANHO_ESTADO + EnemyGenerator.TAMANHO_ESTADO;
+		n += 2 + todasPartes.size() * (2 + SpaceshipPart.TAMANHO_ESTADO);
+		n += 2 + fuelGen.getMaxFuel() * Fuel.TAMANHO_ESTADO;
+		n += 2 + treasureGen.getMaxTreasures() * (1 + Tesouro.TAMANHO_ESTADO);
+		n += 2 + enemyGen.getMaxEnemys() * Inimigo.TAMANHO_ESTADO;
+		n += lasers.getTamanhoMaximoEstado();
+		return n + 8;
+	}
+
+	/**
+	 * Repõe o estado guardado com guardarEstado. Os fuels, tesouros e inimigos
+	 * são recriados. As animações dos outros elementos recomeçam do início.
+	 * 
+	 * @param b de onde ler o estado
+	 */
+	public void restaurarEstado(ByteBuffer b) {
+		state = ESTADOS[b.get()];
+		completed = b.get() != 0;
+		tempo = b.getLong();
+		pontuacao = b.getInt();
+		vidas = b.getInt();
+
+		astronauta.restaurarEstado(b);
+		ship.restaurarEstado(b, todasPartes);
+		treasureGen.restaurarEstado(b);
+		fuelGen.restaurarEstado(b);
+		enemyGen.restaurarEstado(b);
+
+		registo.limpar(Tipo.PARTE);
+		for (int i = b.getShort(); i > 0; i--) {
+			SpaceshipPart p = todasPartes.get(b.getShort());
+			registo.adicionar(Tipo.PARTE, p);
+			p.restaurarEstado(b);
+		}
+		registo.limpar(Tipo.FUEL);
+		for (int i = b.getShort(); i > 0; i--) {
+			Fuel f = new Fuel(new Point(), fuelGen.getImg());
+			addFuel(f);
+			f.restaurarEstado(b);
+		}
+		// o tempo de vida do tesouro é reposto depois de o adicionar
+		registo.limpar(Tipo.TESOURO);
+		for (int i = b.getShort(); i > 0; i--) {
+			Tesouro t = treasureGen.criarTesouro(b.get());
+			addTesouro(t);
+			t.restaurarEstado(b);
+		}
+		// a grelha usa a posição dos inimigos, por isso só se adicionam depois
+		retirarInimigos();
+		for (int i = b.getShort(); i > 0; i--) {
+			Inimigo e = enemyGen.obter();
+			e.restaurarEstado(b);
+			addEnemy(e);
+		}
+		lasers.restaurarEstado(b);
+
+		// o astronauta volta a pegar no que estava a arrastar
+		for (Tipo t : RegistoEntidades.ARRASTAVEIS) {
+			List<Arrastavel> arrastaveis = registo.getVista(t);
+			for (int i = 0; i < arrastaveis.size(); i++) {
+				Arrastavel a = arrastaveis.get(i);
+				if (!a.isDragged())
+					continue;
+				if (a instanceof Fuel)
+					astronauta.pickFuel((Fuel) a);
+				else if (a instanceof Tesouro)
+					astronauta.pickTesouro((Tesouro) a);
+				else if (a instanceof SpaceshipPart)
+					astronauta.pickParte((SpaceshipPart) a);
+			}
+		}
+
+		// os construtores acima usam números aleatórios, por isso este é o último
+		aleatorio.setEstado(b.getLong());
+	}
+
+	/**
+	 * Começa a guardar os últimos estados do mundo, para se poder voltar atrás
+	 * com recuar. O estado é guardado no início de cada update. Toda a memória
+	 * do histórico é reservada já, a partir do tamanho máximo do estado (ver
+	 * getTamanhoMaximoEstado).
+	 * 
+	 * @param ciclos quantos ciclos se quer poder recuar (0 desliga o histórico)
+	 */
+	public void ativarHistorico(int ciclos) {
+		historico = ciclos > 0 ? new HistoricoMundo(ciclos, getTamanhoMaximoEstado()) : null;
+	}
+
+	/**
+	 * esquece os estados guardados, para não se poder recuar para antes deste
+	 * ciclo
+	 */
+	public void limparHistorico() {
+		if (historico != null)
+			historico.limpar();
+	}
+
+	/**
+	 * volta o mundo ao estado em que estava há alguns ciclos atrás
+	 * 
+	 * @param ciclos quantos ciclos recuar
+	 * @return false se não há histórico suficiente para recuar
+	 */
+	public boolean recuar(int ciclos) {
+		return historico != null && historico.restaurar(ciclos, this);
+	}
+
+	/**
+	 * retorna quantos ciclos se pode recuar
+	 * 
+	 * @return quantos ciclos se pode recuar
+	 */
+	public int getCiclosHistorico() {
+		return historico == null ? 0 : historico.getTotal();
 	}
 
 	/**
@@ -501,6 +926,7 @@ public class Mundo {
 	public void setDimensions(int width, int height) {
 		this.width = width;
 		this.height = height;
+		camadaEstatica = null;
 	}
 
 	/**
@@ -0,0 +1,171 @@
+package jetpac.mundo;
+
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registo único das entidades do mundo, organizado por tipo. Permite atualizar
+ * e desenhar todas as entidades numa só passagem e retirar as que já não estão
+ * ativas numa só compactação por ciclo.
+ */
+class RegistoEntidades {
+
+	/**
+	 * Os tipos de entidades, pela ordem em que são atualizadas e desenhadas
+	 */
+	static enum Tipo {
+		PLATAFORMA, INIMIGO, FUEL, TESOURO, PARTE
+	}
+
+	/**
+	 * Quem quer saber das entidades retiradas na compactação
+	 */
+	static interface Observador {
+		/**
+		 * a entidade foi retirada do registo
+		 * 
+		 * @param t o tipo da entidade
+		 * @param e a entidade retirada
+		 */
+		void retirada(Tipo t, Entidade e);
+	}
+
+	// os tipos de entidades que podem ser arrastadas pelo astronauta
+	static final Tipo ARRASTAVEIS[] = { Tipo.FUEL, Tipo.TESOURO, Tipo.PARTE };
+
+	private static final Tipo TIPOS[] = Tipo.values();
+
+	// uma lista por tipo e uma vista só de leitura de cada lista
+	private final ArrayList<Entidade> listas[];
+	private final List<Entidade> vistas[];
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	RegistoEntidades() {
+		listas = new ArrayList[TIPOS.length];
+		vistas = new List[TIPOS.length];
+		for (int i = 0; i < TIPOS.length; i++) {
+			listas[i] = new ArrayList<>();
+			vistas[i] = Collections.unmodifiableList(listas[i]);
+		}
+	}
+
+	/**
+	 * adiciona uma entidade ao registo
+	 * 
+	 * @param t o tipo da entidade
+	 * @param e a entidade a adicionar
+	 */
+	void adicionar(Tipo t, Entidade e) {
+		listas[t.ordinal()].add(e);
+	}
+
+	/**
+	 * retorna uma vista só de leitura das entidades de um dado tipo
+	 * 
+	 * @param t o tipo de entidades
+	 * @return as entidades desse tipo
+	 */
+	@SuppressWarnings("unchecked")
+	<T extends Entidade> List<T> getVista(Tipo t) {
+		return (List<T>) vistas[t.ordinal()];
+	}
+
+	/**
+	 * retorna o número de entidades de um dado tipo
+	 * 
+	 * @param t o tipo de entidades
+	 * @return o número de entidades desse tipo
+	 */
+	int tamanho(Tipo t) {
+		return listas[t.ordinal()].size();
+	}
+
+	/**
+	 * retira todas as entidades de um dado tipo
+	 * 
+	 * @param t o tipo de entidades
+	 */
+	void limpar(Tipo t) {
+		listas[t.ordinal()].clear();
+	}
+
+	/**
+	 * atualiza, numa só passagem, todas as entidades
+	 */
+	void atualizar() {
+		for (int t = 0; t < TIPOS.length; t++) {
+			ArrayList<Entidade> lista = listas[t];
+			for (int i = 0; i < lista.size(); i++)
+				lista.get(i).update();
+		}
+	}
+
+	/**
+	 * atualiza as entidades de um dado tipo
+	 * 
+	 * @param t o tipo de entidades
+	 */
+	void atualizar(Tipo t) {
+		ArrayList<Entidade> lista = listas[t.ordinal()];
+		for (int i = 0; i < lista.size(); i++)
+			lista.get(i).update();
+	}
+
+	/**
+	 * desenha todas as entidades, exceto as de um dado tipo
+	 * 
+	 * @param g       onde desenhar
+	 * @param excluir o tipo de entidades que não se desenha (pode ser null)
+	 */
+	void desenhar(Graphics2D g, Tipo excluir) {
+		for (int t = 0; t < TIPOS.length; t++) {
+			if (TIPOS[t] == excluir)
+				continue;
+			ArrayList<Entidade> lista = listas[t];
+			for (int i = 0; i < lista.size(); i++)
+				lista.get(i).draw(g);
+		}
+	}
+
+	/**
+	 * marca nas zonas sujas o espaço ocupado por todas as entidades, exceto as
+	 * plataformas, que não se mexem
+	 * 
+	 * @param z as zonas sujas
+	 */
+	void marcar(ZonasSujas z) {
+		for (int t = 0; t < TIPOS.length; t++) {
+			if (TIPOS[t] == Tipo.PLATAFORMA)
+				continue;
+			ArrayList<Entidade> lista = listas[t];
+			for (int i = 0; i < lista.size(); i++)
+				z.marcar(lista.get(i).getBounds());
+		}
+	}
+
+	/**
+	 * retira as entidades que já não estão ativas. Cada entidade retirada é
+	 * substituída pela última da lista, por isso a remoção é O(1) mas a ordem
+	 * das entidades não é mantida.
+	 * 
+	 * @param obs quem é avisado de cada entidade retirada
+	 */
+	void compactar(Observador obs) {
+		for (int t = 0; t < TIPOS.length; t++) {
+			ArrayList<Entidade> lista = listas[t];
+			int i = 0;
+			while (i < lista.size()) {
+				if (lista.get(i).isActive()) {
+					i++;
+					continue;
+				}
+				obs.retirada(TIPOS[t], lista.get(i));
+				int ultimo = lista.size() - 1;
+				lista.set(i, lista.get(ultimo));
+				lista.remove(ultimo);
+			}
+		}
+	}
+}
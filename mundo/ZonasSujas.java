@@ -0,0 +1,190 @@
+package jetpac.mundo;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+
+/**
+ * Regista as zonas do ecrã que mudaram entre frames, para que só essas sejam
+ * apagadas, redesenhadas e pintadas. O ecrã é dividido em quadrados e em cada
+ * frame são marcados os quadrados ocupados pelos elementos que se mexem. Uma
+ * zona tem de ser redesenhada se estava ocupada na frame que está na imagem
+ * ou se está ocupada na frame nova.
+ * 
+ * Como o jogo desenha alternadamente em várias imagens, guarda-se o que está
+ * em cada uma delas.
+ */
+public class ZonasSujas {
+
+	// acima desta percentagem de quadrados sujos compensa redesenhar tudo
+	private static final int PERCENTAGEM_MAXIMA = 60;
+
+	private final int tamQuadrado; // tamanho de cada quadrado
+	private final int colunas, linhas; // número de quadrados
+	private final int comp, alt; // dimensões do ecrã
+
+	private final long atual[]; // quadrados ocupados na frame nova
+	private final long porImagem[][]; // quadrados ocupados em cada imagem
+	private final boolean imagemValida[]; // se a imagem tem uma frame do mundo atual
+	private final long ecra[]; // quadrados ocupados na última frame publicada
+	private boolean ecraValido;
+
+	private final long uniao[]; // quadrados a redesenhar
+	private final Path2D.Float clip = new Path2D.Float();
+	private final Rectangle zonaEcra = new Rectangle();
+
+	/**
+	 * Cria o registo de zonas
+	 * 
+	 * @param comp        comprimento do ecrã
+	 * @param alt         altura do ecrã
+	 * @param tamQuadrado tamanho dos quadrados
+	 * @param nImagens    número de imagens onde o jogo desenha
+	 */
+	public ZonasSujas(int comp, int alt, int tamQuadrado, int nImagens) {
+		this.comp = comp;
+		this.alt = alt;
+		this.tamQuadrado = tamQuadrado;
+		colunas = (comp + tamQuadrado - 1) / tamQuadrado;
+		linhas = (alt + tamQuadrado - 1) / tamQuadrado;
+		int nLongs = (colunas * linhas + 63) / 64;
+		atual = new long[nLongs];
+		uniao = new long[nLongs];
+		ecra = new long[nLongs];
+		porImagem = new long[nImagens][nLongs];
+		imagemValida = new boolean[nImagens];
+	}
+
+	/**
+	 * Indica que todas as imagens têm de ser redesenhadas por completo, por
+	 * exemplo porque o mundo mudou
+	 */
+	public void invalidar() {
+		Arrays.fill(imagemValida, false);
+		ecraValido = false;
+	}
+
+	/**
+	 * começa o registo de uma nova frame
+	 */
+	public void novaFrame() {
+		Arrays.fill(atual, 0);
+	}
+
+	/**
+	 * marca como ocupada a zona indicada na nova frame
+	 * 
+	 * @param r a zona ocupada
+	 */
+	public void marcar(Rectangle r) {
+		marcar(r.x, r.y, r.width, r.height);
+	}
+
+	/**
+	 * marca como ocupada a zona indicada na nova frame
+	 * 
+	 * @param x    coordenada x da zona
+	 * @param y    coordenada y da zona
+	 * @param comp comprimento da zona
+	 * @param alt  altura da zona
+	 */
+	public void marcar(int x, int y, int comp, int alt) {
+		if (comp <= 0 || alt <= 0)
+			return;
+		int c0 = Math.max(0, x / tamQuadrado);
+		int l0 = Math.max(0, y / tamQuadrado);
+		int c1 = Math.min(colunas - 1, (x + comp - 1) / tamQuadrado);
+		int l1 = Math.min(linhas - 1, (y + alt - 1) / tamQuadrado);
+		for (int l = l0; l <= l1; l++)
+			for (int c = c0; c <= c1; c++) {
+				int q = l * colunas + c;
+				atual[q >> 6] |= 1L << q;
+			}
+	}
+
+	/**
+	 * Retorna a zona da imagem indicada que tem de ser redesenhada para mostrar
+	 * a nova frame. A partir deste momento considera-se que a imagem tem a nova
+	 * frame.
+	 * 
+	 * @param imagem o índice da imagem onde se vai desenhar
+	 * @return a zona a redesenhar, ou null se for preciso redesenhar tudo
+	 */
+	public Shape getClip(int imagem) {
+		boolean valida = imagemValida[imagem];
+		long anterior[] = porImagem[imagem];
+		for (int i = 0; i < uniao.length; i++)
+			uniao[i] = anterior[i] | atual[i];
+		System.arraycopy(atual, 0, anterior, 0, atual.length);
+		imagemValida[imagem] = true;
+
+		if (!valida || contar(uniao) * 100 > colunas * linhas * PERCENTAGEM_MAXIMA)
+			return null;
+
+		// juntar os quadrados seguidos de cada linha num rectângulo
+		clip.reset();
+		for (int l = 0; l < linhas; l++) {
+			int c = 0;
+			while (c < colunas) {
+				if (!ocupado(uniao, l * colunas + c)) {
+					c++;
+					continue;
+				}
+				int ini = c;
+				while (c < colunas && ocupado(uniao, l * colunas + c))
+					c++;
+				int x0 = ini * tamQuadrado, y0 = l * tamQuadrado;
+				int x1 = c * tamQuadrado, y1 = y0 + tamQuadrado;
+				clip.moveTo(x0, y0);
+				clip.lineTo(x1, y0);
+				clip.lineTo(x1, y1);
+				clip.lineTo(x0, y1);
+				clip.closePath();
+			}
+		}
+		return clip;
+	}
+
+	/**
+	 * Retorna a zona do ecrã que muda entre a última frame publicada e a nova.
+	 * A partir deste momento considera-se que a nova frame foi publicada.
+	 * 
+	 * @return a zona do ecrã a pintar
+	 */
+	public Rectangle getZonaEcra() {
+		boolean valido = ecraValido;
+		int c0 = colunas, l0 = linhas, c1 = -1, l1 = -1;
+		for (int q = 0; q < colunas * linhas; q++) {
+			if (!ocupado(atual, q) && !ocupado(ecra, q))
+				continue;
+			int l = q / colunas, c = q % colunas;
+			c0 = Math.min(c0, c);
+			c1 = Math.max(c1, c);
+			l0 = Math.min(l0, l);
+			l1 = Math.max(l1, l);
+		}
+		System.arraycopy(atual, 0, ecra, 0, atual.length);
+		ecraValido = true;
+
+		if (!valido)
+			zonaEcra.setBounds(0, 0, comp, alt);
+		else if (c1 < 0)
+			zonaEcra.setBounds(0, 0, 0, 0);
+		else
+			zonaEcra.setBounds(c0 * tamQuadrado, l0 * tamQuadrado, (c1 - c0 + 1) * tamQuadrado,
+					(l1 - l0 + 1) * tamQuadrado);
+		return zonaEcra;
+	}
+
+	private static boolean ocupado(long mascara[], int q) {
+		return (mascara[q >> 6] & (1L << q)) != 0;
+	}
+
+	private static int contar(long mascara[]) {
+		int n = 0;
+		for (long m : mascara)
+			n += Long.bitCount(m);
+		return n;
+	}
+}